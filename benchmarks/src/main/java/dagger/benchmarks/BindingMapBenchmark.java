@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.benchmarks;
+
+import dagger.internal.Binding;
+import dagger.internal.BindingMap;
+import dagger.internal.GraphAdapter;
+import dagger.internal.Linker;
+import dagger.internal.ModuleAdapter;
+import dagger.internal.Plugin;
+import dagger.internal.StaticInjection;
+import dagger.internal.ThrowingErrorHandler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the linker's {@link BindingMap} to {@code HashMap}, and measures
+ * binding lookups through a chain of {@code plus()} linkers. The {@code
+ * build*} benchmarks measure memory: their {@code gc.alloc.rate.norm} is the
+ * size of a map of {@code size} bindings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BindingMapBenchmark {
+  /** The number of bindings in the maps and in the root linker. */
+  @Param({ "10000", "100000" })
+  public int size;
+
+  /** The number of linkers below the root linker. */
+  @Param({ "1", "6" })
+  public int depth;
+
+  private String[] keys;
+  private String[] lookups;
+  private Binding<?>[] bindings;
+  private Map<String, Binding<?>> hashMap;
+  private BindingMap bindingMap;
+  private Linker leafLinker;
+  private int next;
+
+  @Setup public void setUp() {
+    keys = new String[size];
+    bindings = new Binding<?>[size];
+    for (int i = 0; i < size; i++) {
+      keys[i] = ("com.example.graph.Node" + i).intern();
+      bindings[i] = new LinkedBinding(keys[i]);
+    }
+    List<String> shuffled = new ArrayList<String>(Arrays.asList(keys));
+    Collections.shuffle(shuffled, new Random(0));
+    lookups = shuffled.toArray(new String[size]);
+
+    hashMap = buildHashMap();
+    bindingMap = buildBindingMap();
+
+    Linker linker = new Linker(null, new UnsupportedPlugin(), new ThrowingErrorHandler());
+    synchronized (linker) {
+      linker.installBindings(hashMap);
+      linker.linkAll();
+    }
+    for (int d = 0; d < depth; d++) {
+      linker = new Linker(linker, new UnsupportedPlugin(), new ThrowingErrorHandler());
+      String key = ("com.example.graph.Scoped" + d).intern();
+      synchronized (linker) {
+        linker.installBindings(Collections.singletonMap(key, new LinkedBinding(key)));
+        linker.linkAll();
+      }
+    }
+    leafLinker = linker;
+  }
+
+  /** Returns the next key to look up, cycling through all keys in a random order. */
+  private String nextKey() {
+    if (++next == size) {
+      next = 0;
+    }
+    return lookups[next];
+  }
+
+  @Benchmark public Map<String, Binding<?>> buildHashMap() {
+    Map<String, Binding<?>> result = new HashMap<String, Binding<?>>();
+    for (int i = 0; i < size; i++) {
+      result.put(keys[i], bindings[i]);
+    }
+    return result;
+  }
+
+  @Benchmark public BindingMap buildBindingMap() {
+    BindingMap result = new BindingMap();
+    for (int i = 0; i < size; i++) {
+      result.put(keys[i], bindings[i]);
+    }
+    return result;
+  }
+
+  @Benchmark public Binding<?> getHashMap() {
+    return hashMap.get(nextKey());
+  }
+
+  @Benchmark public Binding<?> getBindingMap() {
+    return bindingMap.get(nextKey());
+  }
+
+  /** Requests a root binding from a linker {@code depth} levels below the root. */
+  @Benchmark public Binding<?> requestAncestorBinding() {
+    synchronized (leafLinker) {
+      return leafLinker.requestBinding(nextKey(), "benchmark");
+    }
+  }
+
+  /** A binding without dependencies, so it's linked as soon as it's attached. */
+  static class LinkedBinding extends Binding<Object> {
+    LinkedBinding(String key) {
+      super(key, null, false, "benchmark");
+    }
+  }
+
+  /** The benchmark's linkers have all their bindings, so they never call their plugin. */
+  static class UnsupportedPlugin implements Plugin {
+    @Override public Binding<?> getAtInjectBinding(String key, String className,
+        boolean mustBeInjectable) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override public <T> ModuleAdapter<T> getModuleAdapter(Class<? extends T> moduleClass,
+        T module) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override public StaticInjection getStaticInjection(Class<?> injectedClass) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override public <T> GraphAdapter<T> getGraphAdapter(Class<T> moduleClass) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.benchmarks;
+
+import dagger.ObjectGraph;
+import dagger.benchmarks.generator.GraphGenerator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures object graph operations on the synthetic graphs written by {@link
+ * GraphGenerator}. In {@code reflective} mode the graph was compiled without
+ * the annotation processor, so the graph is created with reflection. In
+ * {@code codegen} mode it uses the generated adapters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ObjectGraphBenchmark {
+  @Param({ "reflective", "codegen" })
+  public String mode;
+
+  /** The number of bindings in the graph. One of {@code GraphGenerator.SIZES}. */
+  @Param({ "10", "100", "1000", "10000" })
+  public int size;
+
+  private Class<?> graphModuleClass;
+  private Object plusModule;
+  private Class<?> rootType;
+  private Object entry;
+  private ObjectGraph graph;
+
+  @Setup public void setUp() throws Exception {
+    String packageName = GraphGenerator.packageName(mode, size);
+    graphModuleClass = Class.forName(packageName + ".GraphModule");
+    plusModule = Class.forName(packageName + ".PlusModule").newInstance();
+    rootType = Class.forName(packageName + ".Node0");
+    entry = Class.forName(packageName + ".Entry").newInstance();
+
+    // A fully linked graph, for the operations that don't create a graph.
+    graph = ObjectGraph.create(graphModuleClass.newInstance());
+    graph.validate();
+  }
+
+  @Benchmark public ObjectGraph create() throws Exception {
+    return ObjectGraph.create(graphModuleClass.newInstance());
+  }
+
+  @Benchmark public ObjectGraph createAndValidate() throws Exception {
+    ObjectGraph result = ObjectGraph.create(graphModuleClass.newInstance());
+    result.validate();
+    return result;
+  }
+
+  @Benchmark public ObjectGraph plus() {
+    return graph.plus(plusModule);
+  }
+
+  @Benchmark public Object get() {
+    return graph.get(rootType);
+  }
+
+  @Benchmark public Object inject() {
+    return graph.inject(entry);
+  }
+
+  @Benchmark public void injectStatics() {
+    graph.injectStatics();
+  }
+}
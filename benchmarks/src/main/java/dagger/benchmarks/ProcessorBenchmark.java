@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.benchmarks;
+
+import dagger.benchmarks.generator.GraphGenerator;
+import dagger.internal.codegen.FullGraphProcessor;
+import dagger.internal.codegen.InjectProcessor;
+import dagger.internal.codegen.ProvidesProcessor;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the wall time of compiling a synthetic graph with and without
+ * Dagger's annotation processors. The difference is the processors' cost.
+ * Graphs of the same shape can be linked at runtime with {@link
+ * ObjectGraphBenchmark}, to compare processor and linker scaling.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProcessorBenchmark {
+  @Param({ "100", "1000", "10000" })
+  public int size;
+
+  private File directory;
+  private List<File> sources;
+
+  @Setup public void setUp() throws IOException {
+    directory = File.createTempFile("graph", "");
+    if (!directory.delete() || !directory.mkdir()) {
+      throw new IOException("Unable to create " + directory);
+    }
+    File sourceDirectory = new File(directory, "src");
+    new GraphGenerator("graph", size).write(sourceDirectory);
+    sources = Arrays.asList(new File(sourceDirectory, "graph").listFiles());
+  }
+
+  @Setup(Level.Iteration) public void cleanOutput() throws IOException {
+    File output = new File(directory, "out");
+    delete(output);
+    if (!output.mkdir()) {
+      throw new IOException("Unable to create " + output);
+    }
+  }
+
+  @TearDown public void tearDown() {
+    delete(directory);
+  }
+
+  @Benchmark public boolean compileWithProcessors() throws IOException {
+    return compile("-processor", InjectProcessor.class.getName() + ","
+        + ProvidesProcessor.class.getName() + "," + FullGraphProcessor.class.getName());
+  }
+
+  @Benchmark public boolean compileWithoutProcessors() throws IOException {
+    return compile("-proc:none");
+  }
+
+  /** Compiles the graph with the standard options plus {@code options}. */
+  private boolean compile(String... options) throws IOException {
+    File output = new File(directory, "out");
+    List<String> arguments = new ArrayList<String>();
+    arguments.addAll(Arrays.asList("-d", output.getPath(), "-s", output.getPath(), "-nowarn"));
+    arguments.addAll(Arrays.asList("-classpath", System.getProperty("java.class.path")));
+    arguments.addAll(Arrays.asList(options));
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+    try {
+      boolean success = compiler.getTask(null, fileManager, null, arguments, null,
+          fileManager.getJavaFileObjectsFromFiles(sources)).call();
+      if (!success) {
+        throw new IllegalStateException("Compilation failed for " + directory);
+      }
+      return success;
+    } finally {
+      fileManager.close();
+    }
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
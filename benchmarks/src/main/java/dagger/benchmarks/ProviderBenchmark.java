@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.benchmarks;
+
+import dagger.Lazy;
+import dagger.Module;
+import dagger.ObjectGraph;
+import dagger.Provides;
+import dagger.internal.Binding;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures calls to {@code get()} from a call site that sees many kinds of
+ * bindings, like the parameter loops of reflective bindings. {@code
+ * getVirtual} calls each provider directly; {@code getGuarded} calls {@link
+ * Binding#provide}, which checks for singletons before making the call.
+ * {@code getReflective} gets a reflective binding whose constructor takes a
+ * mix of singletons and other types.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProviderBenchmark {
+  @Singleton public static class A {
+    @Inject A() {
+    }
+  }
+
+  @Singleton public static class B {
+    @Inject B() {
+    }
+  }
+
+  @Singleton public static class C {
+    @Inject C() {
+    }
+  }
+
+  public static class D {
+    @Inject D() {
+    }
+  }
+
+  public static class E {
+  }
+
+  /**
+   * Holds providers of three kinds of binding that don't allocate once warm:
+   * singletons, providers of providers, and lazies of singletons.
+   */
+  public static class Client {
+    @Inject Provider<A> a;
+    @Inject Provider<B> b;
+    @Inject Provider<C> c;
+    @Inject Provider<Provider<A>> providerOfA;
+    @Inject Provider<Lazy<B>> lazyB;
+
+    @Inject Client(A a, B b, C c, D d, E e, A a2, B b2, C c2) {
+    }
+  }
+
+  @Module(entryPoints = Client.class)
+  public static class ProviderModule {
+    @Provides E provideE() {
+      return new E();
+    }
+  }
+
+  private ObjectGraph graph;
+  private Provider<?>[] providers;
+  private Binding<?>[] bindings;
+  private final Object[] results = new Object[8];
+
+  @Setup public void setUp() {
+    graph = ObjectGraph.create(new ProviderModule());
+    Client client = graph.get(Client.class);
+    providers = new Provider<?>[] {
+        client.a, client.providerOfA, client.b, client.lazyB, client.c, client.a, client.b, client.c
+    };
+    bindings = new Binding<?>[providers.length];
+    for (int i = 0; i < providers.length; i++) {
+      bindings[i] = (Binding<?>) providers[i];
+      providers[i].get();
+    }
+  }
+
+  @Benchmark public Object[] getVirtual() {
+    for (int i = 0; i < providers.length; i++) {
+      results[i] = providers[i].get();
+    }
+    return results;
+  }
+
+  @Benchmark public Object[] getGuarded() {
+    for (int i = 0; i < bindings.length; i++) {
+      results[i] = Binding.provide(bindings[i]);
+    }
+    return results;
+  }
+
+  @Benchmark public Client getReflective() {
+    return graph.get(Client.class);
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.benchmarks;
+
+import dagger.Module;
+import dagger.ObjectGraph;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures getting an initialized singleton, alone and with 64 threads
+ * contending for it. Reading the singleton from a plain field is the
+ * baseline that the contended case is compared against.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SingletonBenchmark {
+  @Singleton
+  public static class Service {
+    @Inject Service() {
+    }
+  }
+
+  public static class Client {
+    @Inject Provider<Service> service;
+  }
+
+  @Module(entryPoints = Client.class)
+  public static class ServiceModule {
+  }
+
+  private Provider<Service> provider;
+  private Service service;
+
+  @Setup public void setUp() {
+    Client client = ObjectGraph.create(new ServiceModule()).inject(new Client());
+    provider = client.service;
+    service = provider.get();
+  }
+
+  @Benchmark @Threads(1) public Service getUncontended() {
+    return provider.get();
+  }
+
+  @Benchmark @Threads(64) public Service getContended() {
+    return provider.get();
+  }
+
+  @Benchmark @Threads(64) public Service fieldRead() {
+    return service;
+  }
+}
@@ -0,0 +1,574 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.benchmarks.generator;
+
+import dagger.Lazy;
+import dagger.Module;
+import dagger.Provides;
+import dagger.internal.codegen.JavaWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import static java.lang.reflect.Modifier.ABSTRACT;
+import static java.lang.reflect.Modifier.FINAL;
+import static java.lang.reflect.Modifier.PRIVATE;
+import static java.lang.reflect.Modifier.PUBLIC;
+import static java.lang.reflect.Modifier.STATIC;
+
+/**
+ * Writes the sources of a synthetic object graph. The sources can be compiled
+ * with or without Dagger's annotation processors, so the same graph can be
+ * used to measure both the processors and the runtime.
+ *
+ * <p>The graph's nodes are arranged in {@link #depth layers}. Each node
+ * depends on {@link #fanOut} nodes of the next layer. The layers grow or
+ * shrink so that each node has about {@link #fanIn} dependents. Some
+ * dependencies are injected as a {@code Provider} or a {@code Lazy}.
+ *
+ * <p>Each graph has the following types:
+ * <ul>
+ *   <li>{@code Node0} through {@code Node<size - 1>}. Some nodes are provided
+ *       by {@code @Provides} methods and the others are constructor injected.
+ *       Some nodes are singletons.
+ *   <li>{@code Base0} through {@code Base<supertypeDepth - 1>}, a chain of
+ *       supertypes of the constructor-injected nodes. Each injects a {@code
+ *       Service} into a field.
+ *   <li>{@code NodesModule0} and up, which provide nodes and contribute nodes
+ *       of the last layer to a {@code Set<Object>}. Their entry points are the
+ *       nodes of the first layer. Each includes the next {@link #moduleFanOut}
+ *       modules, forming a tree.
+ *   <li>{@code GraphModule}, a complete module that includes the first nodes
+ *       module. Its entry points are {@code Node0} and {@code Entry}.
+ *   <li>{@code Entry}, which has {@code Node0} and the set of contributions
+ *       injected into fields.
+ *   <li>{@code Statics}, which has {@code Node0} injected into a static field.
+ *   <li>{@code PlusModule}, which adds {@code PlusEntry} to {@code GraphModule}.
+ * </ul>
+ */
+public final class GraphGenerator {
+  /** The graph packages written by {@link #main}, by their compilation mode. */
+  static final String[] MODES = { "reflective", "codegen" };
+
+  /** The graph sizes written by {@link #main}, in bindings. */
+  static final int[] SIZES = { 10, 100, 1000, 10000 };
+
+  /**
+   * The number of nodes per module, by default. This keeps each module's
+   * generated adapter within the JVM's method size limit.
+   */
+  private static final int NODES_PER_MODULE = 300;
+
+  private static final Map<String, String> SET_TYPE
+      = Collections.singletonMap("type", "Provides.Type.SET");
+
+  private final String packageName;
+  private final int size;
+  private int modules;
+  private int moduleFanOut = 2;
+  private int depth = 8;
+  private int fanOut = 3;
+  private int fanIn = 2;
+  private int supertypeDepth = 2;
+  private int setContributions;
+  private int providedPercent = 33;
+  private int singletonPercent = 10;
+  private int providerPercent = 10;
+  private int lazyPercent = 5;
+
+  /** The first node of each layer, plus the number of nodes. */
+  private int[] layerStarts;
+
+  public GraphGenerator(String packageName, int size) {
+    if (size < 1) throw new IllegalArgumentException("size < 1");
+    this.packageName = packageName;
+    this.size = size;
+    this.modules = (size + NODES_PER_MODULE - 1) / NODES_PER_MODULE;
+    this.setContributions = size / 10;
+  }
+
+  /** Sets the number of nodes modules. */
+  public GraphGenerator modules(int modules) {
+    if (modules < 1) throw new IllegalArgumentException("modules < 1");
+    this.modules = modules;
+    return this;
+  }
+
+  /**
+   * Sets the number of modules that each nodes module includes. With 1, the
+   * modules form a chain as deep as the number of modules.
+   */
+  public GraphGenerator moduleFanOut(int moduleFanOut) {
+    if (moduleFanOut < 1) throw new IllegalArgumentException("moduleFanOut < 1");
+    this.moduleFanOut = moduleFanOut;
+    return this;
+  }
+
+  /** Sets the number of layers of nodes, which is the longest dependency path. */
+  public GraphGenerator depth(int depth) {
+    if (depth < 1) throw new IllegalArgumentException("depth < 1");
+    this.depth = depth;
+    return this;
+  }
+
+  /** Sets the number of dependencies of each node outside the last layer. */
+  public GraphGenerator fanOut(int fanOut) {
+    if (fanOut < 1) throw new IllegalArgumentException("fanOut < 1");
+    this.fanOut = fanOut;
+    return this;
+  }
+
+  /** Sets the typical number of dependents of each node outside the first layer. */
+  public GraphGenerator fanIn(int fanIn) {
+    if (fanIn < 1) throw new IllegalArgumentException("fanIn < 1");
+    this.fanIn = fanIn;
+    return this;
+  }
+
+  /** Sets the number of injected supertypes of each constructor-injected node. */
+  public GraphGenerator supertypeDepth(int supertypeDepth) {
+    this.supertypeDepth = supertypeDepth;
+    return this;
+  }
+
+  /** Sets the number of {@code @Provides(type = SET)} methods. */
+  public GraphGenerator setContributions(int setContributions) {
+    this.setContributions = setContributions;
+    return this;
+  }
+
+  /** Sets the percentage of nodes that are provided by {@code @Provides} methods. */
+  public GraphGenerator providedPercent(int providedPercent) {
+    this.providedPercent = providedPercent;
+    return this;
+  }
+
+  /** Sets the percentage of nodes that are singletons. */
+  public GraphGenerator singletonPercent(int singletonPercent) {
+    this.singletonPercent = singletonPercent;
+    return this;
+  }
+
+  /** Sets the percentage of dependencies that are injected as a {@code Provider}. */
+  public GraphGenerator providerPercent(int providerPercent) {
+    this.providerPercent = providerPercent;
+    return this;
+  }
+
+  /** Sets the percentage of dependencies that are injected as a {@code Lazy}. */
+  public GraphGenerator lazyPercent(int lazyPercent) {
+    this.lazyPercent = lazyPercent;
+    return this;
+  }
+
+  /**
+   * Returns the package of the graph of {@code size} bindings that is compiled
+   * in {@code mode}.
+   */
+  public static String packageName(String mode, int size) {
+    return "dagger.benchmarks.graphs." + mode + ".size" + size;
+  }
+
+  /**
+   * Writes graph sources to the source directory {@code args[0]}. With no
+   * other arguments, this writes the benchmarks' graphs: every graph size, once
+   * for each compilation mode. Otherwise {@code args[1]} is the package of a
+   * single graph, and the remaining arguments configure its shape, like
+   * {@code size=5000 depth=20 lazyPercent=0}.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      throw new IllegalArgumentException(
+          "Usage: GraphGenerator <source directory> [<package> [<option>=<value>...]]");
+    }
+    File sourceRoot = new File(args[0]);
+    if (args.length == 1) {
+      for (String mode : MODES) {
+        for (int size : SIZES) {
+          new GraphGenerator(packageName(mode, size), size).write(sourceRoot);
+        }
+      }
+      return;
+    }
+
+    Map<String, Integer> options = new LinkedHashMap<String, Integer>();
+    for (int i = 2; i < args.length; i++) {
+      String[] option = args[i].split("=", 2);
+      if (option.length != 2) {
+        throw new IllegalArgumentException("Expected <option>=<value> but was " + args[i]);
+      }
+      options.put(option[0], Integer.valueOf(option[1]));
+    }
+    Integer size = options.remove("size");
+    GraphGenerator generator = new GraphGenerator(args[1], (size != null) ? size : 1000);
+    for (Map.Entry<String, Integer> option : options.entrySet()) {
+      generator.setOption(option.getKey(), option.getValue());
+    }
+    generator.write(sourceRoot);
+  }
+
+  private void setOption(String name, int value) {
+    if (name.equals("modules")) {
+      modules(value);
+    } else if (name.equals("moduleFanOut")) {
+      moduleFanOut(value);
+    } else if (name.equals("depth")) {
+      depth(value);
+    } else if (name.equals("fanOut")) {
+      fanOut(value);
+    } else if (name.equals("fanIn")) {
+      fanIn(value);
+    } else if (name.equals("supertypeDepth")) {
+      supertypeDepth(value);
+    } else if (name.equals("setContributions")) {
+      setContributions(value);
+    } else if (name.equals("providedPercent")) {
+      providedPercent(value);
+    } else if (name.equals("singletonPercent")) {
+      singletonPercent(value);
+    } else if (name.equals("providerPercent")) {
+      providerPercent(value);
+    } else if (name.equals("lazyPercent")) {
+      lazyPercent(value);
+    } else {
+      throw new IllegalArgumentException("Unknown option: " + name);
+    }
+  }
+
+  /** Writes this graph's sources to {@code sourceRoot}. */
+  public void write(File sourceRoot) throws IOException {
+    File directory = new File(sourceRoot, packageName.replace('.', File.separatorChar));
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Unable to create " + directory);
+    }
+    layerStarts = computeLayerStarts();
+
+    writeService(directory);
+    for (int b = 0; b < supertypeDepth; b++) {
+      writeBase(directory, b);
+    }
+    for (int i = 0; i < size; i++) {
+      writeNode(directory, i);
+    }
+    for (int m = 0; m < modules; m++) {
+      writeNodesModule(directory, m);
+    }
+    writeGraphModule(directory);
+    writeEntry(directory);
+    writeStatics(directory);
+    writePlusModule(directory);
+    writePlusEntry(directory);
+  }
+
+  /**
+   * Returns the first node of each layer, plus the number of nodes. Layer
+   * widths grow by {@code fanOut / fanIn}, so that each node has about {@code
+   * fanIn} dependents.
+   */
+  private int[] computeLayerStarts() {
+    int layers = Math.min(depth, size);
+    double ratio = (double) fanOut / fanIn;
+    double totalWeight = 0;
+    for (int layer = 0; layer < layers; layer++) {
+      totalWeight += Math.pow(ratio, layer);
+    }
+
+    int[] result = new int[layers + 1];
+    int remaining = size;
+    for (int layer = 0; layer < layers; layer++) {
+      int layersAfter = layers - layer - 1;
+      int width = (layersAfter == 0)
+          ? remaining
+          : (int) Math.round(size * Math.pow(ratio, layer) / totalWeight);
+      width = Math.max(1, Math.min(width, remaining - layersAfter));
+      result[layer + 1] = result[layer] + width;
+      remaining -= width;
+    }
+    return result;
+  }
+
+  private void writeService(File directory) throws IOException {
+    JavaWriter writer = newWriter(directory, "Service", Inject.class, Singleton.class);
+    writer.emitAnnotation(Singleton.class);
+    writer.beginType("Service", "class", PUBLIC);
+    writer.emitAnnotation(Inject.class);
+    writer.beginMethod(null, "Service", PUBLIC);
+    writer.endMethod();
+    writer.endType();
+    writer.close();
+  }
+
+  private void writeBase(File directory, int b) throws IOException {
+    JavaWriter writer = newWriter(directory, "Base" + b, Inject.class);
+    writer.beginType("Base" + b, "class", PUBLIC | ABSTRACT, (b > 0) ? "Base" + (b - 1) : null);
+    writer.emitAnnotation(Inject.class);
+    writer.emitField("Service", "service" + b, 0);
+    writer.endType();
+    writer.close();
+  }
+
+  private void writeNode(File directory, int i) throws IOException {
+    JavaWriter writer = newWriter(directory, node(i),
+        Inject.class, Lazy.class, Provider.class, Singleton.class);
+    List<String> parameters = new ArrayList<String>();
+    for (int dependency : dependencies(i)) {
+      parameters.add(dependencyType(i, dependency));
+      parameters.add("node" + dependency);
+    }
+
+    if (!isProvided(i) && isSingleton(i)) {
+      writer.emitAnnotation(Singleton.class);
+    }
+    String supertype = (!isProvided(i) && supertypeDepth > 0)
+        ? "Base" + (supertypeDepth - 1)
+        : null;
+    writer.beginType(node(i), "class", PUBLIC, supertype);
+    for (int dependency : dependencies(i)) {
+      writer.emitField(dependencyType(i, dependency), "node" + dependency, PRIVATE | FINAL);
+    }
+    writer.emitEmptyLine();
+    if (!isProvided(i)) {
+      writer.emitAnnotation(Inject.class);
+    }
+    writer.beginMethod(null, node(i), PUBLIC, parameters.toArray(new String[parameters.size()]));
+    for (int dependency : dependencies(i)) {
+      writer.emitStatement("this.node%s = node%s", dependency, dependency);
+    }
+    writer.endMethod();
+    writer.endType();
+    writer.close();
+  }
+
+  /**
+   * Writes the nodes module {@code m}. It provides every {@code modules}th
+   * provided node, contributes every {@code modules}th set element, and has
+   * every {@code modules}th node of the first layer as an entry point.
+   */
+  private void writeNodesModule(File directory, int m) throws IOException {
+    String moduleName = "NodesModule" + m;
+    JavaWriter writer = newWriter(directory, moduleName,
+        Lazy.class, Module.class, Provider.class, Provides.class, Singleton.class);
+
+    List<String> entryPoints = new ArrayList<String>();
+    for (int i = m; i < layerStarts[1]; i += modules) {
+      entryPoints.add(node(i) + ".class");
+    }
+    List<String> includes = new ArrayList<String>();
+    for (int child = m * moduleFanOut + 1;
+        child <= m * moduleFanOut + moduleFanOut && child < modules; child++) {
+      includes.add("NodesModule" + child + ".class");
+    }
+    Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+    attributes.put("entryPoints", entryPoints.toArray());
+    attributes.put("includes", includes.toArray());
+    attributes.put("complete", false);
+    writer.emitAnnotation(Module.class, attributes);
+    writer.beginType(moduleName, "class", PUBLIC);
+
+    int provided = 0;
+    for (int i = 0; i < size; i++) {
+      if (!isProvided(i) || provided++ % modules != m) {
+        continue;
+      }
+      List<String> parameters = new ArrayList<String>();
+      List<String> arguments = new ArrayList<String>();
+      for (int dependency : dependencies(i)) {
+        parameters.add(dependencyType(i, dependency));
+        parameters.add("node" + dependency);
+        arguments.add("node" + dependency);
+      }
+      writer.emitEmptyLine();
+      writer.emitAnnotation(Provides.class);
+      if (isSingleton(i)) {
+        writer.emitAnnotation(Singleton.class);
+      }
+      writer.beginMethod(node(i), "provide" + node(i), 0,
+          parameters.toArray(new String[parameters.size()]));
+      writer.emitStatement("return new %s(%s)", node(i), join(arguments));
+      writer.endMethod();
+    }
+
+    int lastLayer = layerStarts.length - 2;
+    int lastLayerWidth = layerStarts[lastLayer + 1] - layerStarts[lastLayer];
+    for (int c = m; c < setContributions; c += modules) {
+      int contributed = layerStarts[lastLayer] + c % lastLayerWidth;
+      writer.emitEmptyLine();
+      writer.emitAnnotation(Provides.class, SET_TYPE);
+      writer.beginMethod("Object", "contribute" + c, 0, node(contributed), "node");
+      writer.emitStatement("return node");
+      writer.endMethod();
+    }
+
+    writer.endType();
+    writer.close();
+  }
+
+  private void writeGraphModule(File directory) throws IOException {
+    JavaWriter writer = newWriter(directory, "GraphModule", Module.class);
+    Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+    attributes.put("entryPoints", new Object[] { node(0) + ".class", "Entry.class" });
+    attributes.put("staticInjections", "Statics.class");
+    attributes.put("includes", "NodesModule0.class");
+    writer.emitAnnotation(Module.class, attributes);
+    writer.beginType("GraphModule", "class", PUBLIC);
+    writer.endType();
+    writer.close();
+  }
+
+  private void writeEntry(File directory) throws IOException {
+    JavaWriter writer = newWriter(directory, "Entry", Inject.class, Set.class);
+    writer.beginType("Entry", "class", PUBLIC);
+    writer.emitAnnotation(Inject.class);
+    writer.emitField(node(0), "root", 0);
+    if (setContributions > 0) {
+      writer.emitAnnotation(Inject.class);
+      writer.emitField("Set<Object>", "contributions", 0);
+    }
+    writer.endType();
+    writer.close();
+  }
+
+  private void writeStatics(File directory) throws IOException {
+    JavaWriter writer = newWriter(directory, "Statics", Inject.class);
+    writer.beginType("Statics", "class", PUBLIC);
+    writer.emitAnnotation(Inject.class);
+    writer.emitField(node(0), "root", STATIC);
+    writer.endType();
+    writer.close();
+  }
+
+  private void writePlusModule(File directory) throws IOException {
+    JavaWriter writer = newWriter(directory, "PlusModule", Module.class);
+    Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+    attributes.put("entryPoints", "PlusEntry.class");
+    attributes.put("addsTo", "GraphModule.class");
+    writer.emitAnnotation(Module.class, attributes);
+    writer.beginType("PlusModule", "class", PUBLIC);
+    writer.endType();
+    writer.close();
+  }
+
+  private void writePlusEntry(File directory) throws IOException {
+    JavaWriter writer = newWriter(directory, "PlusEntry", Inject.class);
+    writer.beginType("PlusEntry", "class", PUBLIC);
+    writer.emitField(node(0), "root", PRIVATE | FINAL);
+    writer.emitEmptyLine();
+    writer.emitAnnotation(Inject.class);
+    writer.beginMethod(null, "PlusEntry", PUBLIC, node(0), "root");
+    writer.emitStatement("this.root = root");
+    writer.endMethod();
+    writer.endType();
+    writer.close();
+  }
+
+  /**
+   * Returns a writer for the source file of {@code simpleName}, with the
+   * package and the imports of {@code types} already written.
+   */
+  private JavaWriter newWriter(File directory, String simpleName, Class<?>... types)
+      throws IOException {
+    JavaWriter writer = new JavaWriter(new FileWriter(new File(directory, simpleName + ".java")));
+    writer.emitPackage(packageName);
+    writer.emitEmptyLine();
+    List<String> imports = new ArrayList<String>();
+    for (Class<?> type : types) {
+      imports.add(type.getName());
+    }
+    writer.emitImports(imports);
+    writer.emitEmptyLine();
+    return writer;
+  }
+
+  private String node(int i) {
+    return "Node" + i;
+  }
+
+  /** Returns the nodes of the next layer that node {@code i} depends on. */
+  private Set<Integer> dependencies(int i) {
+    int layer = layerOf(i);
+    if (layer + 2 >= layerStarts.length) {
+      return Collections.emptySet();
+    }
+    int next = layerStarts[layer + 1];
+    int nextWidth = layerStarts[layer + 2] - next;
+    int index = i - layerStarts[layer];
+    Set<Integer> result = new LinkedHashSet<Integer>();
+    for (int d = 0; d < fanOut; d++) {
+      result.add(next + (index * fanOut + d) % nextWidth);
+    }
+    return result;
+  }
+
+  private int layerOf(int i) {
+    int layer = 0;
+    while (layerStarts[layer + 1] <= i) {
+      layer++;
+    }
+    return layer;
+  }
+
+  /**
+   * Returns the type that node {@code i} injects {@code dependency} as: the
+   * node itself, or a {@code Provider} or {@code Lazy} of it.
+   */
+  private String dependencyType(int i, int dependency) {
+    int percentile = percentile(i * 31 + dependency);
+    if (percentile < providerPercent) {
+      return "Provider<" + node(dependency) + ">";
+    } else if (percentile < providerPercent + lazyPercent) {
+      return "Lazy<" + node(dependency) + ">";
+    } else {
+      return node(dependency);
+    }
+  }
+
+  private boolean isProvided(int i) {
+    return percentile(i) < providedPercent;
+  }
+
+  private boolean isSingleton(int i) {
+    return percentile(i + 1) < singletonPercent;
+  }
+
+  /**
+   * Spreads {@code i} evenly over {@code [0, 100)}, so that percentages select
+   * nodes throughout the graph rather than the first nodes.
+   */
+  private static int percentile(int i) {
+    return (int) ((i * 7919L) % 100);
+  }
+
+  private static String join(List<String> parts) {
+    StringBuilder result = new StringBuilder();
+    for (String part : parts) {
+      if (result.length() > 0) {
+        result.append(", ");
+      }
+      result.append(part);
+    }
+    return result.toString();
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package test;
+
+import dagger.Module;
+import dagger.Provides;
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+class TestApp {
+  @Inject A a;
+  @Inject C c;
+
+  static class A {
+    @Inject A(B b) {}
+  }
+
+  static class B {
+    @Inject B(String string) {}
+  }
+
+  /** Providers break cycles, so C and D aren't a problem. */
+  static class C {
+    @Inject C(Provider<D> d) {}
+  }
+
+  static class D {
+    @Inject D(C c) {}
+  }
+
+  @Module(entryPoints = TestApp.class)
+  static class TestModule {
+    @Provides String provideString(A a) {
+      return "string";
+    }
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package test;
+
+import dagger.MapKey;
+import dagger.Module;
+import dagger.Provides;
+import java.util.Map;
+import javax.inject.Inject;
+
+import static dagger.Provides.Type.MAP;
+
+class TestApp {
+  @Inject Map<String, Runnable> handlers;
+
+  @Module(entryPoints = TestApp.class, includes = OtherModule.class)
+  static class TestModule {
+    @Provides(type = MAP) @MapKey("/login") Runnable provideLogin() {
+      return null;
+    }
+  }
+
+  @Module
+  static class OtherModule {
+    @Provides(type = MAP) @MapKey("/login") Runnable provideOtherLogin() {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package test;
+
+import dagger.Module;
+import dagger.Provides;
+import javax.inject.Inject;
+
+class TestApp {
+  @Module(includes = { CountModule.class, EmptyModule.class }, entryPoints = Greeter.class)
+  static class RootModule {
+    @Provides String provideGreeting(Integer count) {
+      return "hello " + count;
+    }
+  }
+
+  @Module
+  static class CountModule {
+    @Provides Integer provideCount() {
+      return 3;
+    }
+  }
+
+  /** Has no @Provides methods, so it has no generated module adapter. */
+  @Module
+  static class EmptyModule {
+  }
+
+  static class Greeter {
+    final String greeting;
+
+    @Inject Greeter(String greeting) {
+      this.greeting = greeting;
+    }
+  }
+}
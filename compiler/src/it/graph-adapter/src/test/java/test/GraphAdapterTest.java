@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2012 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package test;
+
+import dagger.ObjectGraph;
+import dagger.StartupTrace;
+import dagger.internal.GraphAdapter;
+import dagger.internal.plugins.loading.ClassloadingPlugin;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public final class GraphAdapterTest {
+  @Test public void graphAdapterIsGenerated() {
+    GraphAdapter<TestApp.RootModule> adapter
+        = new ClassloadingPlugin().getGraphAdapter(TestApp.RootModule.class);
+    assertNotNull(adapter);
+    assertEquals(4, adapter.getBindingCount()); // Greeter and its members, String, Integer.
+  }
+
+  @Test public void createUsesGraphAdapter() {
+    StartupTrace trace = new StartupTrace();
+    ObjectGraph graph = ObjectGraph.createTraced(trace, new TestApp.RootModule());
+    assertEquals("hello 3", graph.get(TestApp.Greeter.class).greeting);
+
+    // The graph adapter constructs the generated module and inject adapters,
+    // so only the module without a generated adapter is left to the plugins.
+    List<String> fromPlugins = new ArrayList<String>();
+    for (StartupTrace.Event event : trace.getEvents()) {
+      if (event.getCategory().equals("module") || event.getCategory().equals("jit-binding")) {
+        fromPlugins.add(event.getName());
+      }
+    }
+    assertEquals(Arrays.asList(TestApp.EmptyModule.class.getName()), fromPlugins);
+  }
+}
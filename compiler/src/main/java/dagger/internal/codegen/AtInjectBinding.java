@@ -135,4 +135,8 @@ final class AtInjectBinding extends Binding<Object> {
       get.add(binding);
     }
   }
+
+  @Override public String toString() {
+    return provideKey != null ? provideKey : membersKey;
+  }
 }
@@ -16,9 +16,12 @@
 package dagger.internal.codegen;
 
 import dagger.internal.Binding;
+import dagger.internal.GraphAdapter;
 import dagger.internal.ModuleAdapter;
 import dagger.internal.Plugin;
 import dagger.internal.StaticInjection;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.TypeElement;
@@ -33,6 +36,9 @@ public final class CompileTimePlugin implements Plugin {
 
   private final ProcessingEnvironment processingEnv;
 
+  /** The types of the {@code @Inject} bindings created by this plugin, in creation order. */
+  private final Set<TypeElement> atInjectTypes = new LinkedHashSet<TypeElement>();
+
   public CompileTimePlugin(ProcessingEnvironment processingEnv) {
     this.processingEnv = processingEnv;
   }
@@ -51,7 +57,9 @@ public final class CompileTimePlugin implements Plugin {
     if (type.getKind() == ElementKind.INTERFACE) {
       return null;
     }
-    return AtInjectBinding.create(type, mustBeInjectable);
+    Binding<?> result = AtInjectBinding.create(type, mustBeInjectable);
+    atInjectTypes.add(type);
+    return result;
   }
 
   @Override public <T> ModuleAdapter<T> getModuleAdapter(Class<? extends T> moduleClass, T module) {
@@ -61,4 +69,16 @@ public final class CompileTimePlugin implements Plugin {
   @Override public StaticInjection getStaticInjection(Class<?> injectedClass) {
     throw new UnsupportedOperationException();
   }
+
+  @Override public <T> GraphAdapter<T> getGraphAdapter(Class<T> moduleClass) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Returns the types that this plugin has created {@code @Inject} bindings
+   * for.
+   */
+  Set<TypeElement> getAtInjectTypes() {
+    return atInjectTypes;
+  }
 }
@@ -15,28 +15,40 @@
  */
 package dagger.internal.codegen;
 
+import dagger.MapKey;
 import dagger.Module;
 import dagger.Provides;
 import dagger.internal.Binding;
+import dagger.internal.GraphAdapter;
 import dagger.internal.Linker;
+import dagger.internal.MapBinding;
+import dagger.internal.ModuleAdapter;
+import dagger.internal.ProblemDetector;
 import dagger.internal.SetBinding;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.inject.Singleton;
 import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.TypeMirror;
@@ -44,26 +56,54 @@ import javax.lang.model.util.Types;
 import javax.tools.Diagnostic;
 import javax.tools.FileObject;
 import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
 import javax.tools.StandardLocation;
 
+import static dagger.internal.plugins.loading.ClassloadingPlugin.GRAPH_ADAPTER_SUFFIX;
+import static dagger.internal.plugins.loading.ClassloadingPlugin.INJECT_ADAPTER_SUFFIX;
+import static dagger.internal.plugins.loading.ClassloadingPlugin.MODULE_ADAPTER_SUFFIX;
+import static java.lang.reflect.Modifier.FINAL;
+import static java.lang.reflect.Modifier.PRIVATE;
+import static java.lang.reflect.Modifier.PROTECTED;
+import static java.lang.reflect.Modifier.PUBLIC;
+import static java.lang.reflect.Modifier.STATIC;
+
 /**
  * Performs full graph analysis on a module.
  */
 @SupportedAnnotationTypes("dagger.Module")
 @SupportedSourceVersion(SourceVersion.RELEASE_6)
 public final class FullGraphProcessor extends AbstractProcessor {
+  /** The most statements in a generated method, which keeps it well under 64KB of bytecode. */
+  private static final int MAX_STATEMENTS_PER_METHOD = 1000;
+
   private final Set<String> delayedModuleNames = new LinkedHashSet<String>();
 
+  /** Modules whose graph adapters haven't been written yet. */
+  private final Set<String> pendingGraphAdapters = new LinkedHashSet<String>();
+
   /**
    * Perform full-graph analysis on complete modules. This checks that all of
    * the module's dependencies are satisfied.
+   *
+   * <p>Graph adapters are written earlier, in rounds that find no new modules:
+   * a source file written in the last round makes javac warn that it won't be
+   * processed. By then the adapters generated by the other processors exist.
+   * An adapter is only written once its graph links cleanly; graphs that need
+   * types generated in later rounds are tried again then.
    */
   @Override public boolean process(Set<? extends TypeElement> types, RoundEnvironment env) {
+    // Storing module names for later retrieval as the element instance is invalidated across
+    // passes.
+    Set<? extends Element> roundModules = env.getElementsAnnotatedWith(Module.class);
+    for (Element e : roundModules) {
+      String moduleName = ((TypeElement) e).getQualifiedName().toString();
+      delayedModuleNames.add(moduleName);
+      pendingGraphAdapters.add(moduleName);
+    }
     if (!env.processingOver()) {
-      // Storing module names for later retrieval as the element instance is invalidated across
-      // passes.
-      for (Element e : env.getElementsAnnotatedWith(Module.class)) {
-        delayedModuleNames.add(((TypeElement) e).getQualifiedName().toString());
+      if (roundModules.isEmpty()) {
+        writeGraphAdapters();
       }
       return true;
     }
@@ -79,26 +119,80 @@ public final class FullGraphProcessor extends AbstractProcessor {
         continue;
       }
       TypeElement moduleType = (TypeElement) element;
-      Map<String, Binding<?>> bindings = processCompleteModule(moduleType);
+      RecordingMessager messager = new RecordingMessager(processingEnv.getMessager());
+      Map<String, TypeElement> allModules = new LinkedHashMap<String, TypeElement>();
+      collectIncludesRecursively(moduleType, allModules, messager);
+      CompileTimePlugin plugin = new CompileTimePlugin(processingEnv);
+      Map<String, Binding<?>> bindings =
+          processCompleteModule(moduleType, allModules, plugin, messager);
       try {
         writeDotFile(moduleType, bindings);
       } catch (IOException e) {
         error("Graph processing failed: " + e, moduleType);
       }
+      if (!messager.printedErrors
+          && pendingGraphAdapters.contains(moduleType.getQualifiedName().toString())) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+            "No graph adapter was generated for " + moduleType.getQualifiedName()
+                + ": its graph didn't link before the last processing round",
+            moduleType);
+      }
     }
     return true;
   }
 
+  /**
+   * Writes the graph adapters of pending modules whose graphs link cleanly.
+   * Problems aren't reported here; they're reported by the analysis in the
+   * last round.
+   */
+  private void writeGraphAdapters() {
+    for (Iterator<String> i = pendingGraphAdapters.iterator(); i.hasNext();) {
+      TypeElement moduleType = processingEnv.getElementUtils().getTypeElement(i.next());
+      RecordingMessager messager = new RecordingMessager(null);
+      Map<String, TypeElement> allModules = new LinkedHashMap<String, TypeElement>();
+      CompileTimePlugin plugin = new CompileTimePlugin(processingEnv);
+      Map<String, Binding<?>> bindings;
+      try {
+        Map<String, Object> annotation = CodeGen.getAnnotation(Module.class, moduleType);
+        if (!annotation.get("complete").equals(Boolean.TRUE)) {
+          i.remove();
+          continue;
+        }
+        collectIncludesRecursively(moduleType, allModules, messager);
+        if (messager.printedErrors) {
+          continue;
+        }
+        if (!canWriteGraphAdapter(moduleType, allModules.values())) {
+          i.remove();
+          continue;
+        }
+        bindings = processCompleteModule(moduleType, allModules, plugin, messager);
+      } catch (RuntimeException e) {
+        continue; // Types are still missing. Try again in the next round.
+      }
+      if (messager.printedErrors) {
+        continue;
+      }
+      try {
+        writeGraphAdapter(moduleType, allModules.values(), plugin.getAtInjectTypes(),
+            bindings.size());
+      } catch (IOException e) {
+        error("Graph processing failed: " + e, moduleType);
+      }
+      i.remove();
+    }
+  }
+
   private void error(String message, Element element) {
     processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
   }
 
-  private Map<String, Binding<?>> processCompleteModule(TypeElement rootModule) {
-    Map<String, TypeElement> allModules = new LinkedHashMap<String, TypeElement>();
-    collectIncludesRecursively(rootModule, allModules);
-
-    Linker linker = new Linker(null, new CompileTimePlugin(processingEnv),
-        new ReportingErrorHandler(processingEnv, rootModule.getQualifiedName().toString()));
+  private Map<String, Binding<?>> processCompleteModule(TypeElement rootModule,
+      Map<String, TypeElement> allModules, CompileTimePlugin plugin, Messager messager) {
+    ReportingErrorHandler errorHandler = new ReportingErrorHandler(processingEnv, messager,
+        rootModule.getQualifiedName().toString());
+    Linker linker = new Linker(null, plugin, errorHandler);
     // Linker requires synchronization for calls to requestBinding and linkAll.
     // We know statically that we're single threaded, but we synchronize anyway
     // to make the linker happy.
@@ -132,7 +226,7 @@ public final class FullGraphProcessor extends AbstractProcessor {
             case UNIQUE:
               ProviderMethodBinding clobbered = (ProviderMethodBinding) addTo.put(key, binding);
               if (clobbered != null) {
-                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                messager.printMessage(Diagnostic.Kind.ERROR,
                     "Duplicate bindings for " + key
                         + ": " + shortMethodName(clobbered.method)
                         + ", " + shortMethodName(binding.method),
@@ -145,6 +239,19 @@ public final class FullGraphProcessor extends AbstractProcessor {
               SetBinding.add(addTo, elementKey, binding);
               break;
 
+            case MAP:
+              MapKey entryKey = providerMethod.getAnnotation(MapKey.class);
+              if (entryKey == null) {
+                break; // ProvidesProcessor reports the missing @MapKey.
+              }
+              String mapKey = GeneratorKeys.getMapKey(providerMethod);
+              try {
+                MapBinding.add(addTo, mapKey, entryKey.value(), binding);
+              } catch (IllegalArgumentException e) {
+                messager.printMessage(Diagnostic.Kind.ERROR, e.getMessage(), binding.method);
+              }
+              break;
+
             default:
               throw new AssertionError("Unknown @Provides type " + provides.type());
           }
@@ -156,7 +263,29 @@ public final class FullGraphProcessor extends AbstractProcessor {
 
       // Link the bindings. This will traverse the dependency graph, and report
       // errors if any dependencies are missing.
-      return linker.linkAll();
+      Map<String, Binding<?>> linkedBindings = linker.linkAll();
+
+      // Missing dependencies leave holes in the graph, so only look for
+      // cycles in graphs that linked cleanly.
+      if (!errorHandler.reportedErrors()) {
+        detectProblems(rootModule, linkedBindings, messager);
+      }
+      return linkedBindings;
+    }
+  }
+
+  /**
+   * Reports problems like dependency cycles in the graph of {@code
+   * rootModule}. These are the same problems that {@code ObjectGraph.validate()}
+   * finds at runtime.
+   */
+  private void detectProblems(TypeElement rootModule, Map<String, Binding<?>> bindings,
+      Messager messager) {
+    try {
+      new ProblemDetector().detectProblems(bindings.values());
+    } catch (IllegalStateException e) {
+      messager.printMessage(Diagnostic.Kind.ERROR,
+          e.getMessage() + "\n  for " + rootModule.getQualifiedName(), rootModule);
     }
   }
 
@@ -165,11 +294,12 @@ public final class FullGraphProcessor extends AbstractProcessor {
         + "." + method.getSimpleName() + "()";
   }
 
-  private void collectIncludesRecursively(TypeElement module, Map<String, TypeElement> result) {
+  private void collectIncludesRecursively(TypeElement module, Map<String, TypeElement> result,
+      Messager messager) {
     Map<String, Object> annotation = CodeGen.getAnnotation(Module.class, module);
     if (annotation == null) {
       // TODO(tbroyer): pass annotation information
-      error("No @Module on " + module, module);
+      messager.printMessage(Diagnostic.Kind.ERROR, "No @Module on " + module, module);
       return;
     }
 
@@ -184,12 +314,12 @@ public final class FullGraphProcessor extends AbstractProcessor {
     for (Object include : seedModules) {
       if (!(include instanceof TypeMirror)) {
         // TODO(tbroyer): pass annotation information
-        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+        messager.printMessage(Diagnostic.Kind.WARNING,
             "Unexpected value for include: " + include + " in " + module, module);
         continue;
       }
       TypeElement includedModule = (TypeElement) typeUtils.asElement((TypeMirror) include);
-      collectIncludesRecursively(includedModule, result);
+      collectIncludesRecursively(includedModule, result, messager);
     }
   }
 
@@ -224,6 +354,10 @@ public final class FullGraphProcessor extends AbstractProcessor {
         get.add(binding);
       }
     }
+
+    @Override public String toString() {
+      return method.getEnclosingElement() + "." + method;
+    }
   }
 
   void writeDotFile(TypeElement module, Map<String, Binding<?>> bindings) throws IOException {
@@ -237,4 +371,175 @@ public final class FullGraphProcessor extends AbstractProcessor {
     new GraphVisualizer().write(bindings, dotWriter);
     dotWriter.close();
   }
+
+  /**
+   * Returns true if the graph of {@code rootModule} can be created by a graph
+   * adapter. That requires the graph's modules to be reachable from {@code
+   * rootModule} by includes alone, and to be accessible from its package.
+   */
+  private boolean canWriteGraphAdapter(TypeElement rootModule, Collection<TypeElement> modules) {
+    String packageName = CodeGen.getPackage(rootModule).getQualifiedName().toString();
+    for (TypeElement module : modules) {
+      Map<String, Object> annotation = CodeGen.getAnnotation(Module.class, module);
+      if (annotation == null || !annotation.get("addsTo").equals(Void.class)) {
+        return false;
+      }
+      if (!isAccessible(module, packageName)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns true if code in {@code packageName} can refer to {@code type}. */
+  private boolean isAccessible(TypeElement type, String packageName) {
+    boolean samePackage = CodeGen.getPackage(type).getQualifiedName().contentEquals(packageName);
+    for (Element e = type; e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+      Set<Modifier> modifiers = e.getModifiers();
+      if (modifiers.contains(Modifier.PRIVATE)
+          || (!samePackage && !modifiers.contains(Modifier.PUBLIC))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes a graph adapter that directly constructs the generated adapters of
+   * {@code modules} and of the {@code @Inject} types in {@code injectTypes}.
+   * Modules and types without generated adapters are left to the runtime.
+   *
+   * @param bindingCount the number of keys bound in the linked graph.
+   */
+  private void writeGraphAdapter(TypeElement rootModule, Collection<TypeElement> modules,
+      Collection<TypeElement> injectTypes, int bindingCount) throws IOException {
+    String adapterName = CodeGen.adapterName(rootModule, GRAPH_ADAPTER_SUFFIX);
+    JavaFileObject sourceFile = processingEnv.getFiler()
+        .createSourceFile(adapterName, rootModule);
+    JavaWriter writer = new JavaWriter(sourceFile.openWriter());
+
+    writer.emitEndOfLineComment(ProcessorJavadocs.GENERATED_BY_DAGGER);
+    writer.emitPackage(CodeGen.getPackage(rootModule).getQualifiedName().toString());
+    writer.emitEmptyLine();
+    writer.emitImports(Arrays.asList(Binding.class.getName(), GraphAdapter.class.getName(),
+        ModuleAdapter.class.getName(), List.class.getName(), Map.class.getName()));
+
+    String typeName = rootModule.getQualifiedName().toString();
+    writer.emitEmptyLine();
+    writer.emitJavadoc(ProcessorJavadocs.GRAPH_TYPE, typeName);
+    writer.beginType(adapterName, "class", PUBLIC | FINAL,
+        CodeGen.parameterizedType(GraphAdapter.class, typeName));
+
+    List<String> moduleStatements = new ArrayList<String>();
+    for (TypeElement module : modules) {
+      String moduleAdapterName = CodeGen.adapterName(module, MODULE_ADAPTER_SUFFIX);
+      moduleStatements.add(String.format("map.put(%s.class, %s)",
+          writer.compressType(module.getQualifiedName().toString()),
+          hasType(moduleAdapterName)
+              ? "new " + writer.compressType(moduleAdapterName) + "()"
+              : "null"));
+    }
+    writer.emitEmptyLine();
+    writer.emitAnnotation(Override.class);
+    emitMethod(writer, "getModuleAdapters", PROTECTED, CodeGen.parameterizedType(
+        Map.class, "java.lang.Class<?>", CodeGen.parameterizedType(ModuleAdapter.class, "?")),
+        "map", moduleStatements);
+
+    List<String> bindingStatements = new ArrayList<String>();
+    for (TypeElement type : injectTypes) {
+      String injectAdapterName = CodeGen.adapterName(type, INJECT_ADAPTER_SUFFIX);
+      if (hasType(injectAdapterName)) {
+        bindingStatements.add(
+            String.format("bindings.add(new %s())", writer.compressType(injectAdapterName)));
+      }
+    }
+    writer.emitEmptyLine();
+    writer.emitAnnotation(Override.class);
+    emitMethod(writer, "getJitBindings", PUBLIC,
+        CodeGen.parameterizedType(List.class, CodeGen.parameterizedType(Binding.class, "?")),
+        "bindings", bindingStatements);
+
+    writer.emitEmptyLine();
+    writer.emitAnnotation(Override.class);
+    writer.beginMethod("int", "getBindingCount", PUBLIC);
+    writer.emitStatement("return %s", bindingCount);
+    writer.endMethod();
+
+    writer.endType();
+    writer.close();
+  }
+
+  /**
+   * Emits a void method that takes a single parameter and runs {@code
+   * statements}. Long methods are split into private helper methods, which
+   * keeps large graphs within the JVM's limit of 64KB of bytecode per method.
+   */
+  private void emitMethod(JavaWriter writer, String name, int modifiers, String parameterType,
+      String parameterName, List<String> statements) throws IOException {
+    writer.beginMethod("void", name, modifiers, parameterType, parameterName);
+    if (statements.size() <= MAX_STATEMENTS_PER_METHOD) {
+      for (String statement : statements) {
+        writer.emitStatement("%s", statement);
+      }
+      writer.endMethod();
+      return;
+    }
+    int helperCount = 0;
+    for (int i = 0; i < statements.size(); i += MAX_STATEMENTS_PER_METHOD) {
+      writer.emitStatement("%s%s(%s)", name, helperCount++, parameterName);
+    }
+    writer.endMethod();
+    for (int h = 0; h < helperCount; h++) {
+      writer.emitEmptyLine();
+      writer.beginMethod("void", name + h, PRIVATE | STATIC, parameterType, parameterName);
+      int start = h * MAX_STATEMENTS_PER_METHOD;
+      int end = Math.min(start + MAX_STATEMENTS_PER_METHOD, statements.size());
+      for (String statement : statements.subList(start, end)) {
+        writer.emitStatement("%s", statement);
+      }
+      writer.endMethod();
+    }
+  }
+
+  /** Returns true if the type named {@code className} exists. */
+  private boolean hasType(String className) {
+    return processingEnv.getElementUtils().getTypeElement(className) != null;
+  }
+
+  /**
+   * Forwards messages to a delegate, if there is one, and remembers whether
+   * any of them were errors. Without a delegate, messages are dropped.
+   */
+  private static final class RecordingMessager implements Messager {
+    private final Messager delegate;
+    boolean printedErrors;
+
+    RecordingMessager(Messager delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override public void printMessage(Diagnostic.Kind kind, CharSequence message) {
+      printMessage(kind, message, null, null, null);
+    }
+
+    @Override public void printMessage(Diagnostic.Kind kind, CharSequence message,
+        Element element) {
+      printMessage(kind, message, element, null, null);
+    }
+
+    @Override public void printMessage(Diagnostic.Kind kind, CharSequence message,
+        Element element, AnnotationMirror annotation) {
+      printMessage(kind, message, element, annotation, null);
+    }
+
+    @Override public void printMessage(Diagnostic.Kind kind, CharSequence message,
+        Element element, AnnotationMirror annotation, AnnotationValue value) {
+      if (kind == Diagnostic.Kind.ERROR) {
+        printedErrors = true;
+      }
+      if (delegate != null) {
+        delegate.printMessage(kind, message, element, annotation, value);
+      }
+    }
+  }
 }
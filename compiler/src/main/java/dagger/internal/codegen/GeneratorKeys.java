@@ -31,6 +31,8 @@ import javax.lang.model.type.TypeMirror;
  */
 final class GeneratorKeys {
   private static final String SET_PREFIX = Set.class.getName() + "<";
+  private static final String MAP_PREFIX
+      = Map.class.getName() + "<" + String.class.getName() + ", ";
 
   private GeneratorKeys() {
   }
@@ -75,6 +77,19 @@ final class GeneratorKeys {
     return result.toString();
   }
 
+  /** Returns the provided key for {@code method} as the value type of a {@code Map<String, V>}. */
+  public static String getMapKey(ExecutableElement method) {
+    StringBuilder result = new StringBuilder();
+    AnnotationMirror qualifier = getQualifier(method.getAnnotationMirrors(), method);
+    if (qualifier != null) {
+      qualifierToString(qualifier, result);
+    }
+    result.append(MAP_PREFIX);
+    CodeGen.typeToString(method.getReturnType(), result, '$');
+    result.append(">");
+    return result.toString();
+  }
+
   /** Returns the provider key for {@code variable}. */
   public static String get(VariableElement variable) {
     StringBuilder result = new StringBuilder();
@@ -41,6 +41,9 @@ public final class ProcessorJavadocs {
       + "instance provision of types served by {@code @Provides} methods.";
   static final String STATIC_INJECTION_TYPE = ""
       + "A manager for {@code %s}'s injections into static fields.";
+  static final String GRAPH_TYPE = ""
+      + "Creates the adapters of the object graph rooted at {@code %s}\n"
+      + "without loading them by name.";
 
   /** Creates an appropriate javadoc depending on aspects of the type in question. */
   static String binderTypeDocs(String type, boolean abstrakt, boolean members, boolean dependent) {
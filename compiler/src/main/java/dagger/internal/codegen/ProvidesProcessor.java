@@ -15,14 +15,17 @@
  */
 package dagger.internal.codegen;
 
+import dagger.MapKey;
 import dagger.Module;
 import dagger.Provides;
 import dagger.internal.Binding;
 import dagger.internal.Linker;
+import dagger.internal.MapBinding;
 import dagger.internal.ModuleAdapter;
 import dagger.internal.SetBinding;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -130,6 +133,16 @@ public final class ProvidesProcessor extends AbstractProcessor {
         continue;
       }
 
+      Provides.Type providesType = providerMethod.getAnnotation(Provides.class).type();
+      boolean hasMapKey = providerMethod.getAnnotation(MapKey.class) != null;
+      if ((providesType == Provides.Type.MAP) != hasMapKey) {
+        String message = hasMapKey
+            ? "@MapKey is only allowed on @Provides(type = MAP) methods: "
+            : "@Provides(type = MAP) methods must have a @MapKey: ";
+        error(message + type.getQualifiedName() + "." + providerMethod, providerMethod);
+        continue;
+      }
+
       List<ExecutableElement> methods = result.get(type.toString());
       if (methods == null) {
         methods = new ArrayList<ExecutableElement>();
@@ -170,13 +183,13 @@ public final class ProvidesProcessor extends AbstractProcessor {
         .createSourceFile(adapterName, type);
     JavaWriter writer = new JavaWriter(sourceFile.openWriter());
 
-    boolean multibindings = checkForMultibindings(providerMethods);
+    Set<Provides.Type> types = getProvidesTypes(providerMethods);
     boolean providerMethodDependencies = checkForDependencies(providerMethods);
 
     writer.emitEndOfLineComment(ProcessorJavadocs.GENERATED_BY_DAGGER);
     writer.emitPackage(CodeGen.getPackage(type).getQualifiedName().toString());
     writer.emitEmptyLine();
-    writer.emitImports(getImports(multibindings, providerMethodDependencies));
+    writer.emitImports(getImports(types, providerMethodDependencies));
 
     String typeName = type.getQualifiedName().toString();
     writer.emitEmptyLine();
@@ -247,6 +260,15 @@ public final class ProvidesProcessor extends AbstractProcessor {
               bindingClassName(providerMethod, methodToClassName, methodNameToNextId));
           break;
         }
+        case MAP: {
+          String key = GeneratorKeys.getMapKey(providerMethod);
+          String entryKey = providerMethod.getAnnotation(MapKey.class).value();
+          writer.emitStatement("MapBinding.add(map, %s, %s, new %s(module))",
+              JavaWriter.stringLiteral(key),
+              JavaWriter.stringLiteral(entryKey),
+              bindingClassName(providerMethod, methodToClassName, methodNameToNextId));
+          break;
+        }
         default:
           throw new AssertionError("Unknown @Provides type " + provides.type());
       }
@@ -273,7 +295,7 @@ public final class ProvidesProcessor extends AbstractProcessor {
     writer.close();
   }
 
-  private Set<String> getImports(boolean multibindings, boolean dependencies) {
+  private Set<String> getImports(Set<Provides.Type> types, boolean dependencies) {
     Set<String> imports = new LinkedHashSet<String>();
     imports.add(Binding.class.getName());
     imports.add(Map.class.getName());
@@ -283,9 +305,12 @@ public final class ProvidesProcessor extends AbstractProcessor {
       imports.add(Linker.class.getName());
       imports.add(Set.class.getName());
     }
-    if (multibindings) {
+    if (types.contains(Provides.Type.SET)) {
       imports.add(SetBinding.class.getName());
     }
+    if (types.contains(Provides.Type.MAP)) {
+      imports.add(MapBinding.class.getName());
+    }
     return imports;
   }
 
@@ -298,13 +323,12 @@ public final class ProvidesProcessor extends AbstractProcessor {
     return false;
   }
 
-  private boolean checkForMultibindings(List<ExecutableElement> providerMethods) {
+  private Set<Provides.Type> getProvidesTypes(List<ExecutableElement> providerMethods) {
+    Set<Provides.Type> result = EnumSet.noneOf(Provides.Type.class);
     for (ExecutableElement element : providerMethods) {
-      if (element.getAnnotation(Provides.class).type() == Provides.Type.SET) {
-        return true;
-      }
+      result.add(element.getAnnotation(Provides.class).type());
     }
-    return false;
+    return result;
   }
 
   private String bindingClassName(ExecutableElement providerMethod,
@@ -17,28 +17,38 @@ package dagger.internal.codegen;
 
 import dagger.internal.Linker;
 import java.util.List;
+import javax.annotation.processing.Messager;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.TypeElement;
 import javax.tools.Diagnostic;
 
 /**
- * A {@code Linker.ErrorHandler} which gathers errors and reports them via a processing
- * environment.
+ * A {@code Linker.ErrorHandler} which gathers errors and reports them via a
+ * {@code Messager}.
  */
 final class ReportingErrorHandler implements Linker.ErrorHandler {
   private final ProcessingEnvironment processingEnv;
+  private final Messager messager;
   private final String moduleName;
+  private boolean reportedErrors;
 
-  ReportingErrorHandler(ProcessingEnvironment processingEnv, String moduleName) {
+  ReportingErrorHandler(ProcessingEnvironment processingEnv, Messager messager,
+      String moduleName) {
     this.processingEnv = processingEnv;
+    this.messager = messager;
     this.moduleName = moduleName;
   }
 
   @Override public void handleErrors(List<String> errors) {
     TypeElement module = processingEnv.getElementUtils().getTypeElement(moduleName);
     for (String error : errors) {
-      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, error + " for " + moduleName,
-          module);
+      messager.printMessage(Diagnostic.Kind.ERROR, error + " for " + moduleName, module);
+      reportedErrors = true;
     }
   }
+
+  /** Returns true if any errors have been reported. */
+  boolean reportedErrors() {
+    return reportedErrors;
+  }
 }
@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import dagger.internal.Binding;
+import dagger.internal.InstrumentedBinding;
+import dagger.internal.Linker;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records how often each binding of an object graph is used and how long it
+ * takes. Use {@link ObjectGraph#createInstrumented} to create a graph that
+ * records to an instance of this class; graphs created with {@link
+ * ObjectGraph#create} aren't instrumented and have no overhead.
+ *
+ * <p>Times include the time spent creating and injecting the binding's
+ * dependencies. A singleton is measured each time it's requested, so its
+ * maximum time is usually the time to construct it.
+ *
+ * <p>Use {@link #snapshot} to read the recorded metrics, or register a {@link
+ * BindingMetricsJmx} to publish them with JMX.
+ */
+public final class BindingMetrics {
+  private final ConcurrentMap<String, KeyRecorder> recorders
+      = new ConcurrentHashMap<String, KeyRecorder>();
+  private final boolean recordAllocations;
+
+  private final Linker.Instrumentation instrumentation = new Linker.Instrumentation() {
+    @Override public <T> Binding<T> instrument(Binding<T> binding) {
+      String key = binding.provideKey != null ? binding.provideKey : binding.membersKey;
+      return new InstrumentedBinding<T>(binding, recorder(key));
+    }
+  };
+
+  /** Creates metrics that record invocation counts and times. */
+  public BindingMetrics() {
+    this(false);
+  }
+
+  /**
+   * @param recordAllocations true to also record the number of bytes allocated
+   *     by each call. This requires a HotSpot JVM and makes each call slower.
+   */
+  public BindingMetrics(boolean recordAllocations) {
+    if (recordAllocations && !AllocationMeter.isSupported()) {
+      throw new UnsupportedOperationException("Allocation measurement isn't supported");
+    }
+    this.recordAllocations = recordAllocations;
+  }
+
+  Linker.Instrumentation instrumentation() {
+    return instrumentation;
+  }
+
+  private KeyRecorder recorder(String key) {
+    KeyRecorder recorder = recorders.get(key);
+    if (recorder == null) {
+      recorder = new KeyRecorder(key, recordAllocations);
+      KeyRecorder existing = recorders.putIfAbsent(key, recorder);
+      if (existing != null) {
+        recorder = existing;
+      }
+    }
+    return recorder;
+  }
+
+  /**
+   * Returns the metrics recorded so far for each binding that has been
+   * instrumented, sorted by key. Bindings are identified by their provider
+   * key, or by their members key if they can't provide instances. Calls in
+   * progress may be partially included.
+   */
+  public Map<String, Stats> snapshot() {
+    Map<String, Stats> result = new TreeMap<String, Stats>();
+    for (KeyRecorder recorder : recorders.values()) {
+      result.put(recorder.key, recorder.snapshot());
+    }
+    return Collections.unmodifiableMap(result);
+  }
+
+  /** Discards the metrics recorded so far. Bindings remain instrumented. */
+  public void reset() {
+    for (KeyRecorder recorder : recorders.values()) {
+      recorder.reset();
+    }
+  }
+
+  /** The metrics of a single binding. */
+  public static final class Stats {
+    private final String key;
+    private final long provisions;
+    private final long injections;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final long allocatedBytes;
+    private final long[] histogram;
+
+    Stats(String key, long provisions, long injections, long totalNanos, long maxNanos,
+        long allocatedBytes, long[] histogram) {
+      this.key = key;
+      this.provisions = provisions;
+      this.injections = injections;
+      this.totalNanos = totalNanos;
+      this.maxNanos = maxNanos;
+      this.allocatedBytes = allocatedBytes;
+      this.histogram = histogram;
+    }
+
+    public String getKey() {
+      return key;
+    }
+
+    /** Returns the number of calls to {@code get()}. */
+    public long getProvisions() {
+      return provisions;
+    }
+
+    /** Returns the number of calls to {@code injectMembers()}. */
+    public long getInjections() {
+      return injections;
+    }
+
+    /** Returns the total time spent in calls to this binding. */
+    public long getTotalNanos() {
+      return totalNanos;
+    }
+
+    public long getMaxNanos() {
+      return maxNanos;
+    }
+
+    /** Returns the bytes allocated by calls to this binding, or 0 if not recorded. */
+    public long getAllocatedBytes() {
+      return allocatedBytes;
+    }
+
+    public long getP50Nanos() {
+      return percentileNanos(50);
+    }
+
+    public long getP99Nanos() {
+      return percentileNanos(99);
+    }
+
+    /**
+     * Returns an upper bound of the duration of {@code percentile} percent of
+     * calls. Durations are recorded in power of two buckets, so this is at most
+     * twice the actual percentile.
+     */
+    public long percentileNanos(double percentile) {
+      if (percentile < 0 || percentile > 100) {
+        throw new IllegalArgumentException("percentile: " + percentile);
+      }
+      long count = provisions + injections;
+      if (count == 0) {
+        return 0;
+      }
+      long target = (long) Math.ceil(count * percentile / 100);
+      long seen = 0;
+      for (int bucket = 0; bucket < histogram.length; bucket++) {
+        seen += histogram[bucket];
+        if (seen >= target && seen > 0) {
+          return Math.min(bucketUpperBound(bucket), maxNanos);
+        }
+      }
+      return maxNanos;
+    }
+
+    @Override public String toString() {
+      return key + "[provisions=" + provisions + ", injections=" + injections
+          + ", totalNanos=" + totalNanos + ", p50Nanos=" + getP50Nanos()
+          + ", p99Nanos=" + getP99Nanos() + ", maxNanos=" + maxNanos
+          + ", allocatedBytes=" + allocatedBytes + "]";
+    }
+  }
+
+  /** Bucket {@code b} holds durations in {@code [2^(b-1), 2^b)}, and bucket 0 holds 0. */
+  private static int bucket(long nanos) {
+    return 64 - Long.numberOfLeadingZeros(nanos);
+  }
+
+  private static long bucketUpperBound(int bucket) {
+    return bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+  }
+
+  private static final class KeyRecorder implements InstrumentedBinding.Recorder {
+    final String key;
+    final boolean recordAllocations;
+    final AtomicLong provisions = new AtomicLong();
+    final AtomicLong injections = new AtomicLong();
+    final AtomicLong totalNanos = new AtomicLong();
+    final AtomicLong maxNanos = new AtomicLong();
+    final AtomicLong allocatedBytes = new AtomicLong();
+    final AtomicLongArray histogram = new AtomicLongArray(65);
+
+    KeyRecorder(String key, boolean recordAllocations) {
+      this.key = key;
+      this.recordAllocations = recordAllocations;
+    }
+
+    @Override public long allocatedBytes() {
+      return recordAllocations ? AllocationMeter.currentThreadAllocatedBytes() : 0;
+    }
+
+    @Override public void record(boolean provision, long nanos, long allocatedBytesBefore) {
+      if (recordAllocations) {
+        allocatedBytes.addAndGet(AllocationMeter.currentThreadAllocatedBytes()
+            - allocatedBytesBefore);
+      }
+      (provision ? provisions : injections).incrementAndGet();
+      totalNanos.addAndGet(nanos);
+      histogram.incrementAndGet(bucket(nanos));
+      while (true) {
+        long max = maxNanos.get();
+        if (nanos <= max || maxNanos.compareAndSet(max, nanos)) {
+          break;
+        }
+      }
+    }
+
+    Stats snapshot() {
+      long[] buckets = new long[histogram.length()];
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i] = histogram.get(i);
+      }
+      return new Stats(key, provisions.get(), injections.get(), totalNanos.get(),
+          maxNanos.get(), allocatedBytes.get(), buckets);
+    }
+
+    void reset() {
+      provisions.set(0);
+      injections.set(0);
+      totalNanos.set(0);
+      maxNanos.set(0);
+      allocatedBytes.set(0);
+      for (int i = 0; i < histogram.length(); i++) {
+        histogram.set(i, 0);
+      }
+    }
+  }
+
+  /**
+   * Reads per-thread allocation counters. This is a separate class so that
+   * {@code java.lang.management}, which isn't available on Android, is only
+   * loaded when allocations are recorded.
+   */
+  private static final class AllocationMeter {
+    private static final com.sun.management.ThreadMXBean THREADS = threadMXBean();
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+      try {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+          return (com.sun.management.ThreadMXBean) threads;
+        }
+      } catch (LinkageError e) {
+        // Not a HotSpot JVM.
+      }
+      return null;
+    }
+
+    static boolean isSupported() {
+      return THREADS != null;
+    }
+
+    static long currentThreadAllocatedBytes() {
+      return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+  }
+}
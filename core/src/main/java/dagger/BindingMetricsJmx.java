@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Publishes {@link BindingMetrics} with JMX. This is separate from {@code
+ * BindingMetrics} because {@code javax.management} isn't available on all
+ * platforms.
+ */
+public final class BindingMetricsJmx implements BindingMetricsMXBean {
+  private final BindingMetrics metrics;
+
+  public BindingMetricsJmx(BindingMetrics metrics) {
+    if (metrics == null) throw new NullPointerException("metrics");
+    this.metrics = metrics;
+  }
+
+  /**
+   * Registers the metrics with the platform MBean server.
+   *
+   * @param name the object name, like {@code "dagger:type=BindingMetrics"}.
+   * @throws IllegalArgumentException if {@code name} is malformed or already
+   *     registered.
+   */
+  public static ObjectName register(BindingMetrics metrics, String name) {
+    try {
+      ObjectName objectName = new ObjectName(name);
+      ManagementFactory.getPlatformMBeanServer()
+          .registerMBean(new BindingMetricsJmx(metrics), objectName);
+      return objectName;
+    } catch (JMException e) {
+      throw new IllegalArgumentException("Failed to register " + name, e);
+    }
+  }
+
+  @Override public List<BindingMetrics.Stats> getBindings() {
+    return new ArrayList<BindingMetrics.Stats>(metrics.snapshot().values());
+  }
+
+  @Override public long getTotalCalls() {
+    long total = 0;
+    for (BindingMetrics.Stats stats : metrics.snapshot().values()) {
+      total += stats.getProvisions() + stats.getInjections();
+    }
+    return total;
+  }
+
+  @Override public void reset() {
+    metrics.reset();
+  }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import java.util.List;
+
+/**
+ * The JMX management interface of {@link BindingMetrics}.
+ */
+public interface BindingMetricsMXBean {
+  /** Returns the metrics of each instrumented binding, sorted by key. */
+  List<BindingMetrics.Stats> getBindings();
+
+  /** Returns the total number of calls to all instrumented bindings. */
+  long getTotalCalls();
+
+  /** Discards the metrics recorded so far. */
+  void reset();
+}
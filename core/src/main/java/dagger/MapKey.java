@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Annotates a {@code @Provides(type = MAP)} method with the key under which
+ * its returned value is contributed to the map. For example, this contributes
+ * a {@code Handler} to a {@code Map<String, Handler>} under the key {@code
+ * "/login"}: <pre><code>
+ *   &#64;Provides(type = MAP) &#64;MapKey("/login")
+ *   Handler provideLoginHandler(LoginHandler handler) {
+ *     return handler;
+ *   }
+ * </code></pre>
+ *
+ * <p>Each key may be contributed to a map at most once.
+ */
+@Documented @Target(METHOD) @Retention(RUNTIME)
+public @interface MapKey {
+  String value();
+}
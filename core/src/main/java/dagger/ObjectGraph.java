@@ -16,20 +16,30 @@
  */
 package dagger;
 
+import dagger.StartupTrace.Span;
 import dagger.internal.Binding;
+import dagger.internal.GraphAdapter;
 import dagger.internal.Keys;
 import dagger.internal.Linker;
 import dagger.internal.ModuleAdapter;
 import dagger.internal.Plugin;
 import dagger.internal.ProblemDetector;
 import dagger.internal.RuntimeAggregatingPlugin;
+import dagger.internal.SingletonInitializer;
 import dagger.internal.StaticInjection;
 import dagger.internal.ThrowingErrorHandler;
 import dagger.internal.UniqueMap;
 import dagger.internal.plugins.loading.ClassloadingPlugin;
 import dagger.internal.plugins.reflect.ReflectivePlugin;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 
 import static dagger.internal.RuntimeAggregatingPlugin.getAllModuleAdapters;
 
@@ -61,27 +71,73 @@ import static dagger.internal.RuntimeAggregatingPlugin.getAllModuleAdapters;
  * </ul>
  */
 public final class ObjectGraph {
-  private final ObjectGraph base;
+  /**
+   * The plugin of graphs created by {@link #create}. It's shared so that it
+   * remembers which of its plugins resolved each class.
+   */
+  private static final RuntimeAggregatingPlugin DEFAULT_PLUGIN = new RuntimeAggregatingPlugin(
+      new ClassloadingPlugin(), new ReflectivePlugin());
+
   private final Linker linker;
   private final Map<Class<?>, StaticInjection> staticInjections;
   private final Map<String, Class<?>> entryPoints;
+
+  /**
+   * The entry points of this graph and of the graphs it extends, by key. This
+   * graph's entry points take precedence. Merged when the graph is created so
+   * that looking up an entry point doesn't walk the chain of base graphs.
+   */
+  private final Map<String, Class<?>> allEntryPoints;
   private final Plugin plugin;
 
-  ObjectGraph(ObjectGraph base,
-      Linker linker,
+  /** Records binding calls, or null if this graph isn't instrumented. */
+  private final BindingMetrics metrics;
+
+  /** Records graph creation and linking, or null if this graph isn't traced. */
+  private final StartupTrace trace;
+
+  /**
+   * Linked bindings for {@link #get}, by requested type. Lookups in this map
+   * don't build keys or acquire the linker's lock.
+   */
+  private final ConcurrentMap<Class<?>, Binding<?>> getBindings
+      = new ConcurrentHashMap<Class<?>, Binding<?>>();
+
+  /** Linked bindings for {@link #inject}, by the type whose members they inject. */
+  private final ConcurrentMap<Class<?>, Binding<?>> injectBindings
+      = new ConcurrentHashMap<Class<?>, Binding<?>>();
+
+  /**
+   * True once all of this graph's bindings, entry points and static injections
+   * have been linked. Linking them again does nothing, so {@link #plus} skips
+   * it.
+   */
+  private volatile boolean linked;
+
+  /** The plans of graphs created by {@link #plus}, by the classes of their modules. */
+  private final ConcurrentMap<List<Class<?>>, PlusPlan> plusPlans
+      = new ConcurrentHashMap<List<Class<?>>, PlusPlan>();
+
+  ObjectGraph(Linker linker,
       Plugin plugin,
+      BindingMetrics metrics,
+      StartupTrace trace,
       Map<Class<?>, StaticInjection> staticInjections,
-      Map<String, Class<?>> entryPoints) {
+      Map<String, Class<?>> entryPoints,
+      Map<String, Class<?>> allEntryPoints) {
     if (linker == null) throw new NullPointerException("linker");
     if (plugin == null) throw new NullPointerException("plugin");
     if (staticInjections == null) throw new NullPointerException("staticInjections");
     if (entryPoints == null) throw new NullPointerException("entryPoints");
+    if (allEntryPoints == null) throw new NullPointerException("allEntryPoints");
 
-    this.base = base;
     this.linker = linker;
     this.plugin = plugin;
+    this.metrics = metrics;
+    this.trace = trace;
     this.staticInjections = staticInjections;
     this.entryPoints = entryPoints;
+    this.allEntryPoints = allEntryPoints;
   }
 
   /**
@@ -98,38 +154,141 @@ public final class ObjectGraph {
    * the graph at runtime.
    */
   public static ObjectGraph create(Object... modules) {
-    RuntimeAggregatingPlugin plugin = new RuntimeAggregatingPlugin(
-            new ClassloadingPlugin(), new ReflectivePlugin());
-    return makeGraph(null, plugin, modules);
+    return makeGraph(null, DEFAULT_PLUGIN, null, null, modules);
   }
 
-  private static ObjectGraph makeGraph(ObjectGraph base, Plugin plugin, Object... modules) {
-    Map<String, Class<?>> entryPoints = new LinkedHashMap<String, Class<?>>();
-    Map<Class<?>, StaticInjection> staticInjections
-        = new LinkedHashMap<Class<?>, StaticInjection>();
+  /**
+   * Returns a new dependency graph like {@link #create}, that records calls to
+   * its bindings in {@code metrics}. Graphs created by {@link #plus} on the
+   * returned graph record to {@code metrics} too.
+   *
+   * <p>Instrumented graphs are slower. Only graphs created with this method
+   * are instrumented.
+   */
+  public static ObjectGraph createInstrumented(BindingMetrics metrics, Object... modules) {
+    if (metrics == null) throw new NullPointerException("metrics");
+    return makeGraph(null, DEFAULT_PLUGIN, metrics, null, modules);
+  }
+
+  /**
+   * Returns a new dependency graph like {@link #create}, that records the time
+   * spent loading modules, creating bindings and linking in {@code trace}.
+   * Graphs created by {@link #plus} on the returned graph are traced too.
+   */
+  public static ObjectGraph createTraced(StartupTrace trace, Object... modules) {
+    if (trace == null) throw new NullPointerException("trace");
+    Plugin plugin = trace.trace(new RuntimeAggregatingPlugin(
+        trace.trace(new ClassloadingPlugin(), false),
+        trace.trace(new ReflectivePlugin(), false)), true);
+    return makeGraph(null, plugin, null, trace, modules);
+  }
+
+  private static ObjectGraph makeGraph(ObjectGraph base, Plugin plugin, BindingMetrics metrics,
+      StartupTrace trace, Object... modules) {
+    Span span = StartupTrace.begin(trace, StartupTrace.GRAPH, base == null ? "create" : "plus");
 
     // Extract bindings in the 'base' and 'overrides' set. Within each set no
-    // duplicates are permitted.
-    Map<String, Binding<?>> baseBindings = new UniqueMap<String, Binding<?>>();
+    // duplicates are permitted. Generated graph adapters know the graph's size.
+    GraphAdapter<Object> graphAdapter = (base == null) ? getGraphAdapter(plugin, modules) : null;
+    int bindingCount = (graphAdapter != null) ? graphAdapter.getBindingCount() : 0;
+    Map<String, Binding<?>> baseBindings = new UniqueMap<String, Binding<?>>(bindingCount);
     Map<String, Binding<?>> overrideBindings = new UniqueMap<String, Binding<?>>();
-    for (ModuleAdapter<?> moduleAdapter : getAllModuleAdapters(plugin, modules).values()) {
-      for (String key : moduleAdapter.entryPoints) {
-        entryPoints.put(key, moduleAdapter.getModule().getClass());
-      }
-      for (Class<?> c : moduleAdapter.staticInjections) {
+    List<Class<?>> moduleClasses = (base != null) ? moduleClasses(modules) : null;
+    PlusPlan plan = (base != null) ? base.plusPlans.get(moduleClasses) : null;
+    Map<Class<?>, ModuleAdapter<?>> moduleAdapters;
+    if (graphAdapter != null) {
+      Object rootModule = (modules[0] instanceof Class) ? null : modules[0]; // Adapter constructs.
+      moduleAdapters = graphAdapter.getAllModuleAdapters(plugin, rootModule);
+    } else if (plan != null) {
+      moduleAdapters = plan.getModuleAdapters(plugin, modules);
+    } else {
+      moduleAdapters = getAllModuleAdapters(plugin, modules);
+    }
+
+    Map<String, Class<?>> entryPoints;
+    Map<String, Class<?>> allEntryPoints;
+    Map<Class<?>, StaticInjection> staticInjections
+        = new LinkedHashMap<Class<?>, StaticInjection>();
+    if (plan != null) {
+      entryPoints = plan.entryPoints;
+      allEntryPoints = plan.allEntryPoints;
+      for (Class<?> c : plan.staticInjections) {
         staticInjections.put(c, null);
       }
+    } else {
+      entryPoints = new LinkedHashMap<String, Class<?>>();
+      for (ModuleAdapter<?> moduleAdapter : moduleAdapters.values()) {
+        for (String key : moduleAdapter.entryPoints) {
+          entryPoints.put(key, moduleAdapter.getModule().getClass());
+        }
+        for (Class<?> c : moduleAdapter.staticInjections) {
+          staticInjections.put(c, null);
+        }
+      }
+      if (base != null) {
+        allEntryPoints = new HashMap<String, Class<?>>(base.allEntryPoints);
+        allEntryPoints.putAll(entryPoints);
+      } else {
+        allEntryPoints = entryPoints;
+      }
+    }
+
+    for (ModuleAdapter<?> moduleAdapter : moduleAdapters.values()) {
       Map<String, Binding<?>> addTo = moduleAdapter.overrides ? overrideBindings : baseBindings;
+      Span bindingsSpan = (trace != null)
+          ? StartupTrace.begin(trace, StartupTrace.MODULE_BINDINGS,
+              moduleAdapter.getModule().getClass().getName())
+          : Span.NONE;
       moduleAdapter.getBindings(addTo);
+      bindingsSpan.end();
+    }
+
+    if (base != null && plan == null) {
+      base.plusPlans.putIfAbsent(moduleClasses, new PlusPlan(moduleAdapters.keySet(),
+          entryPoints, allEntryPoints, staticInjections.keySet()));
     }
 
     // Create a linker and install all of the user's bindings
     Linker linker = new Linker((base != null) ? base.linker : null, plugin,
-        new ThrowingErrorHandler());
+        new ThrowingErrorHandler(), (metrics != null) ? metrics.instrumentation() : null,
+        bindingCount);
     linker.installBindings(baseBindings);
     linker.installBindings(overrideBindings);
+    if (graphAdapter != null) {
+      List<Binding<?>> jitBindings = new ArrayList<Binding<?>>();
+      graphAdapter.getJitBindings(jitBindings);
+      linker.installJitBindings(jitBindings);
+    }
 
-    return new ObjectGraph(base, linker, plugin, staticInjections, entryPoints);
+    ObjectGraph result = new ObjectGraph(linker, plugin, metrics, trace, staticInjections,
+        entryPoints, allEntryPoints);
+    span.end();
+    return result;
+  }
+
+  /**
+   * Returns the generated graph adapter for {@code modules}, or null if it
+   * doesn't have one. Graph adapters are only generated for complete modules,
+   * so only graphs with a single module may have one.
+   */
+  @SuppressWarnings("unchecked") // The graph adapter is created for the module's class.
+  private static GraphAdapter<Object> getGraphAdapter(Plugin plugin, Object[] modules) {
+    if (modules.length != 1) {
+      return null;
+    }
+    Class<?> moduleClass = (modules[0] instanceof Class)
+        ? (Class<?>) modules[0]
+        : modules[0].getClass();
+    return (GraphAdapter<Object>) plugin.getGraphAdapter(moduleClass);
+  }
+
+  /** Returns the classes of {@code modules}, which may be module instances or classes. */
+  private static List<Class<?>> moduleClasses(Object[] modules) {
+    List<Class<?>> result = new ArrayList<Class<?>>(modules.length);
+    for (Object module : modules) {
+      result.add((module instanceof Class) ? (Class<?>) module : module.getClass());
+    }
+    return result;
   }
 
   /**
@@ -144,10 +303,18 @@ public final class ObjectGraph {
    *
    * <p>This <strong>does not</strong> inject any members or validate the graph.
    * See {@link #create} for guidance on injection and validation.
+   *
+   * <p>Graphs created by this method are cheap enough to create one per
+   * request. This graph is linked only once, and the modules, entry points and
+   * static injections of graphs created with the same module classes are
+   * computed only once. The cost of creating the returned graph and linking
+   * its bindings depends on the size of {@code modules}, not of this graph.
    */
   public ObjectGraph plus(Object... modules) {
-    linkEverything();
-    return makeGraph(this, plugin, modules);
+    if (!linked) {
+      linkEverything();
+    }
+    return makeGraph(this, plugin, metrics, trace, modules);
   }
 
 
@@ -170,7 +337,8 @@ public final class ObjectGraph {
 
   /**
    * Do runtime graph problem detection. For fastest graph creation, rely on
-   * build time tools for graph validation.
+   * build time tools for graph validation: the annotation processor reports
+   * the same problems as compile errors for complete modules.
    *
    * @throws IllegalStateException if this graph has problems.
    */
@@ -179,14 +347,88 @@ public final class ObjectGraph {
     new ProblemDetector().detectProblems(allBindings.values());
   }
 
+  /**
+   * Like {@link #validate()}, but links the graph and detects problems
+   * concurrently on {@code executor}. The graph's bindings are split into
+   * groups that don't depend on each other, and the groups are checked
+   * concurrently without holding this graph's lock. Problems are reported in
+   * the same order however the groups are scheduled.
+   *
+   * <p>Splitting the graph costs about as much as checking it on one thread,
+   * so this is faster than {@link #validate()} only when {@code executor} has
+   * several threads and the graph has several independent groups.
+   *
+   * @throws IllegalStateException if this graph has problems.
+   */
+  public void validate(Executor executor) {
+    if (executor == null) throw new NullPointerException("executor");
+    List<Binding<?>> allBindings;
+    synchronized (linker) {
+      allBindings = new ArrayList<Binding<?>>(linkEverything(executor).values());
+    }
+    new ProblemDetector().detectProblems(allBindings, executor);
+  }
+
+  /**
+   * Links all bindings, entry points and static injections now rather than
+   * when they're first used. Just-in-time bindings are created concurrently on
+   * {@code executor}, which can speed up the creation of large graphs whose
+   * bindings are spread across many classes. Linking errors are reported the
+   * same way as they are when linking on demand.
+   *
+   * @throws IllegalStateException if this graph is missing bindings.
+   */
+  public void linkAll(Executor executor) {
+    if (executor == null) throw new NullPointerException("executor");
+    linkEverything(executor);
+  }
+
+  /**
+   * Links this graph and then creates all of its singletons now rather than
+   * when they're first used. This moves the cost of creating singletons from
+   * the first requests to the graph to startup. Singletons are created on
+   * {@code executor} once the singletons they depend on have been created, so
+   * independent singletons are created concurrently. This returns when all
+   * singletons have been created.
+   *
+   * <p>Singletons of the graph that this graph extends aren't created; call
+   * this method on that graph first. Neither are singletons that contribute to
+   * a set or map, like {@code @Provides(type=SET)} methods. They have no key
+   * of their own, and are created when the set or map is first provided,
+   * which may be while creating a singleton that depends on it.
+   *
+   * @return the time taken to create each singleton in nanoseconds, by key,
+   *     in the order the singletons were created. The time to create a
+   *     singleton includes the time to create its unscoped dependencies.
+   * @throws IllegalStateException if this graph is missing bindings.
+   * @throws RuntimeException the first exception thrown while creating a
+   *     singleton.
+   */
+  public Map<String, Long> initializeSingletons(Executor executor) {
+    if (executor == null) throw new NullPointerException("executor");
+    SingletonInitializer initializer;
+    synchronized (linker) {
+      initializer = new SingletonInitializer(linkEverything(executor).values());
+    }
+    return initializer.initialize(executor);
+  }
+
   /**
    * Links all bindings, entry points and static injections.
    */
   private Map<String, Binding<?>> linkEverything() {
+    return linkEverything(null);
+  }
+
+  private Map<String, Binding<?>> linkEverything(Executor executor) {
     synchronized (linker) {
+      Span span = StartupTrace.begin(trace, StartupTrace.LINK, "link all");
       linkStaticInjections();
       linkEntryPoints();
-      return linker.linkAll();
+      Map<String, Binding<?>> result = linker.linkAll(executor);
+      linked = true;
+      span.end();
+      return result;
     }
   }
 
@@ -201,9 +443,11 @@ public final class ObjectGraph {
     // requested bindings. Finally we call linkStaticInjections() again: this
     // time the linker won't return null because everything has been linked.
     synchronized (linker) {
+      Span span = StartupTrace.begin(trace, StartupTrace.LINK, "link static injections");
       linkStaticInjections();
       linker.linkRequested();
       linkStaticInjections();
+      span.end();
     }
 
     for (Map.Entry<Class<?>, StaticInjection> entry : staticInjections.entrySet()) {
@@ -218,11 +462,16 @@ public final class ObjectGraph {
    *     graph's entry point types.
    */
   public <T> T get(Class<T> type) {
-    String key = Keys.get(type);
-    String entryPointKey = Keys.getMembersKey(type);
+    Binding<?> binding = getBindings.get(type);
+    if (binding == null) {
+      String key = Keys.get(type);
+      String entryPointKey = Keys.getMembersKey(type);
+      binding = getEntryPointBinding(entryPointKey, key);
+      getBindings.put(type, binding);
+    }
     @SuppressWarnings("unchecked") // The linker matches keys to bindings by their type.
-    Binding<T> binding = (Binding<T>) getEntryPointBinding(entryPointKey, key);
-    return binding.get();
+    Binding<T> typedBinding = (Binding<T>) binding;
+    return Binding.provide(typedBinding);
   }
 
   /**
@@ -233,14 +482,66 @@ public final class ObjectGraph {
    *     not one of this object graph's entry point types.
    */
   public <T> T inject(T instance) {
-    String membersKey = Keys.getMembersKey(instance.getClass());
-    @SuppressWarnings("unchecked") // The linker matches keys to bindings by their type.
-    Binding<Object> binding = (Binding<Object>) getEntryPointBinding(membersKey, membersKey);
-    binding.injectMembers(instance);
+    getInjectBinding(instance.getClass()).injectMembers(instance);
     return instance;
   }
 
   /**
+   * Injects the members of each instance in {@code instances}, including
+   * injectable members inherited from their supertypes. This looks up the
+   * binding for each run of instances of the same runtime type only once, so
+   * it's faster than calling {@link #inject} for each instance.
+   *
+   * @throws IllegalArgumentException if the runtime type of an instance is not
+   *     one of this object graph's entry point types.
+   */
+  public <C extends Collection<?>> C injectAll(C instances) {
+    Class<?> type = null;
+    Binding<Object> binding = null;
+    for (Object instance : instances) {
+      if (instance.getClass() != type) {
+        type = instance.getClass();
+        binding = getInjectBinding(type);
+      }
+      binding.injectMembers(instance);
+    }
+    return instances;
+  }
+
+  /**
+   * Returns a members injector for {@code type}. The returned injector is
+   * linked and may be reused and shared by threads. It injects the members
+   * declared by {@code type} and its supertypes, but not those of subclasses
+   * of {@code type}.
+   *
+   * @throws IllegalArgumentException if {@code type} is not one of this object
+   *     graph's entry point types.
+   */
+  public <T> MembersInjector<T> getMembersInjector(Class<T> type) {
+    @SuppressWarnings("unchecked") // The linker matches keys to bindings by their type.
+    MembersInjector<T> result = (MembersInjector<T>) getInjectBinding(type);
+    return result;
+  }
+
+  /**
+   * Returns the linked binding that injects the members of {@code type}.
+   */
+  private Binding<Object> getInjectBinding(Class<?> type) {
+    Binding<?> binding = injectBindings.get(type);
+    if (binding == null) {
+      String membersKey = Keys.getMembersKey(type);
+      binding = getEntryPointBinding(membersKey, membersKey);
+      injectBindings.put(type, binding);
+    }
+    @SuppressWarnings("unchecked") // The linker matches keys to bindings by their type.
+    Binding<Object> typedBinding = (Binding<Object>) binding;
+    return typedBinding;
+  }
+
+  /**
+   * Returns the linked binding for {@code key}. This acquires the linker's
+   * lock, so callers should cache the result.
+   *
    * @param entryPointKey the key used to store the entry point. This is always
    *     a members injection key because those keys can always be created, even
    *     if the type has no injectable constructor.
@@ -248,11 +549,7 @@ public final class ObjectGraph {
    *     regular (provider) key or a members key.
    */
   private Binding<?> getEntryPointBinding(String entryPointKey, String key) {
-    Class<?> moduleClass = null;
-    for (ObjectGraph graph = this; graph != null; graph = graph.base) {
-      moduleClass = graph.entryPoints.get(entryPointKey);
-      if (moduleClass != null) break;
-    }
+    Class<?> moduleClass = allEntryPoints.get(entryPointKey);
     if (moduleClass == null) {
       throw new IllegalArgumentException("No entry point for " + entryPointKey
           + ". You must explicitly add an entry point to one of your modules.");
@@ -261,10 +558,53 @@ public final class ObjectGraph {
     synchronized (linker) {
       Binding<?> binding = linker.requestBinding(key, moduleClass, false);
       if (binding == null || !binding.isLinked()) {
+        Span span = StartupTrace.begin(trace, StartupTrace.LINK, key);
         linker.linkRequested();
+        span.end();
         binding = linker.requestBinding(key, moduleClass, false);
       }
       return binding;
     }
   }
+
+  /**
+   * The modules, entry points and static injections of a graph created by
+   * {@link #plus}. These depend only on the classes of the modules, so they're
+   * computed once and shared by all graphs created with the same classes.
+   */
+  private static final class PlusPlan {
+    /** All modules including the included ones, in the order they're installed. */
+    final Class<?>[] moduleClasses;
+    /** Shared by graphs created with this plan, which must not modify them. */
+    final Map<String, Class<?>> entryPoints;
+    final Map<String, Class<?>> allEntryPoints;
+    final Class<?>[] staticInjections;
+
+    PlusPlan(Collection<Class<?>> moduleClasses, Map<String, Class<?>> entryPoints,
+        Map<String, Class<?>> allEntryPoints, Collection<Class<?>> staticInjections) {
+      this.moduleClasses = moduleClasses.toArray(new Class<?>[moduleClasses.size()]);
+      this.entryPoints = entryPoints;
+      this.allEntryPoints = allEntryPoints;
+      this.staticInjections = staticInjections.toArray(new Class<?>[staticInjections.size()]);
+    }
+
+    /**
+     * Returns the module adapters for {@code modules} and the modules they
+     * include, without looking up the includes of each module.
+     */
+    Map<Class<?>, ModuleAdapter<?>> getModuleAdapters(Plugin plugin, Object[] modules) {
+      Map<Class<?>, Object> instances = new HashMap<Class<?>, Object>();
+      for (Object module : modules) {
+        if (!(module instanceof Class)) {
+          instances.put(module.getClass(), module);
+        }
+      }
+      Map<Class<?>, ModuleAdapter<?>> result = new LinkedHashMap<Class<?>, ModuleAdapter<?>>();
+      for (Class<?> moduleClass : moduleClasses) {
+        // Modules that weren't passed as instances are constructed by the plugin.
+        result.put(moduleClass, plugin.getModuleAdapter(moduleClass, instances.get(moduleClass)));
+      }
+      return result;
+    }
+  }
 }
@@ -46,7 +46,15 @@ public @interface Provides {
      * method as parameters. The {@code Set<T>} produced from the accumulation of values will be
      * immutable.
      */
-    SET
+    SET,
+
+    /**
+     * The method's return type forms the value type of a {@code Map<String, V>}, and the
+     * returned value is contributed to the map under the key named by the method's {@link
+     * MapKey} annotation. The object graph will pass dependencies to the method as parameters.
+     * The {@code Map<String, V>} produced from the accumulation of values will be immutable.
+     */
+    MAP
   }
 
   Type type() default Type.UNIQUE;
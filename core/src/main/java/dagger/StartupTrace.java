@@ -0,0 +1,382 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import dagger.internal.Binding;
+import dagger.internal.GraphAdapter;
+import dagger.internal.ModuleAdapter;
+import dagger.internal.Plugin;
+import dagger.internal.StaticInjection;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Records where the time goes while an object graph is created and linked.
+ * Use {@link ObjectGraph#createTraced} to create a graph that records to an
+ * instance of this class. The trace has an event for each:
+ * <ul>
+ *   <li>module adapter that is loaded, and each module whose bindings are
+ *       installed;
+ *   <li>just-in-time binding and static injection that is created;
+ *   <li>call to a plugin, including those that fail and fall back to the
+ *       next plugin;
+ *   <li>linking pass.
+ * </ul>
+ *
+ * <p>Events nest: a module adapter's event contains the events of the plugins
+ * that were asked for it. Each event records the number of classes loaded
+ * while it was in progress, when the JVM reports it. This count includes
+ * classes loaded concurrently by other threads.
+ *
+ * <p>Export the trace with {@link #toJson} or {@link #toChromeTrace}. The
+ * latter can be opened by {@code chrome://tracing}.
+ */
+public final class StartupTrace {
+  /** Event categories. */
+  static final String GRAPH = "graph";
+  static final String MODULE = "module";
+  static final String MODULE_BINDINGS = "module-bindings";
+  static final String JIT_BINDING = "jit-binding";
+  static final String STATIC_INJECTION = "static-injection";
+  static final String PLUGIN = "plugin";
+  static final String LINK = "link";
+
+  private final long startNanos = System.nanoTime();
+  private final List<Event> events = new ArrayList<Event>();
+
+  /**
+   * Returns the events recorded so far, in the order they started. Events
+   * that haven't finished aren't included.
+   */
+  public List<Event> getEvents() {
+    List<Event> result;
+    synchronized (events) {
+      result = new ArrayList<Event>(events);
+    }
+    Collections.sort(result, new Comparator<Event>() {
+      @Override public int compare(Event a, Event b) {
+        return a.startNanos < b.startNanos ? -1 : (a.startNanos == b.startNanos ? 0 : 1);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Returns the events as a JSON object with an {@code events} array. Times
+   * are in microseconds since this trace was created.
+   */
+  public String toJson() {
+    StringBuilder result = new StringBuilder();
+    result.append("{\"events\":[");
+    List<Event> all = getEvents();
+    for (int i = 0; i < all.size(); i++) {
+      Event event = all.get(i);
+      result.append(i == 0 ? "\n" : ",\n");
+      result.append("{\"category\":").append(quote(event.category));
+      result.append(",\"name\":").append(quote(event.name));
+      result.append(",\"thread\":").append(quote(event.threadName));
+      result.append(",\"startMicros\":").append(event.startNanos / 1000);
+      result.append(",\"durationMicros\":").append(event.durationNanos / 1000);
+      result.append(",\"classesLoaded\":").append(event.classesLoaded);
+      if (event.failure != null) {
+        result.append(",\"failure\":").append(quote(event.failure));
+      }
+      result.append('}');
+    }
+    result.append("\n]}\n");
+    return result.toString();
+  }
+
+  /**
+   * Returns the events in the Trace Event Format read by {@code
+   * chrome://tracing} and other trace viewers.
+   */
+  public String toChromeTrace() {
+    StringBuilder result = new StringBuilder();
+    result.append("{\"traceEvents\":[");
+    List<Event> all = getEvents();
+    for (int i = 0; i < all.size(); i++) {
+      Event event = all.get(i);
+      result.append(i == 0 ? "\n" : ",\n");
+      result.append("{\"name\":").append(quote(event.name));
+      result.append(",\"cat\":").append(quote(event.category));
+      result.append(",\"ph\":\"X\",\"pid\":1");
+      result.append(",\"tid\":").append(event.threadId);
+      result.append(",\"ts\":").append(event.startNanos / 1000.0);
+      result.append(",\"dur\":").append(event.durationNanos / 1000.0);
+      result.append(",\"args\":{\"classesLoaded\":").append(event.classesLoaded);
+      if (event.failure != null) {
+        result.append(",\"failure\":").append(quote(event.failure));
+      }
+      result.append("}}");
+    }
+    result.append("\n],\"displayTimeUnit\":\"ms\"}\n");
+    return result.toString();
+  }
+
+  private static long totalLoadedClassCount() {
+    return ClassCounting.SUPPORTED ? ClassLoadCounter.totalLoadedClassCount() : -1;
+  }
+
+  private static String quote(String s) {
+    StringBuilder result = new StringBuilder(s.length() + 2);
+    result.append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        result.append('\\').append(c);
+      } else if (c < 0x20) {
+        result.append(String.format("\\u%04x", (int) c));
+      } else {
+        result.append(c);
+      }
+    }
+    result.append('"');
+    return result.toString();
+  }
+
+  /**
+   * Starts an event in {@code trace}. Call {@link Span#end} when it completes.
+   * If {@code trace} is null this returns a span that records nothing.
+   */
+  static Span begin(StartupTrace trace, String category, String name) {
+    return trace != null ? trace.new RecordingSpan(category, name) : Span.NONE;
+  }
+
+  /**
+   * Returns a plugin that records an event for each call to {@code plugin}.
+   * Calls that throw are recorded as failures.
+   *
+   * @param aggregate true if {@code plugin} delegates to other plugins. Its
+   *     events are categorized by operation rather than as {@link #PLUGIN}.
+   */
+  Plugin trace(Plugin plugin, boolean aggregate) {
+    return new TracingPlugin(plugin, aggregate);
+  }
+
+  /** A single completed operation. */
+  public static final class Event {
+    private final String category;
+    private final String name;
+    private final String threadName;
+    private final long threadId;
+    private final long startNanos;
+    private final long durationNanos;
+    private final long classesLoaded;
+    private final String failure;
+
+    Event(String category, String name, Thread thread, long startNanos, long durationNanos,
+        long classesLoaded, String failure) {
+      this.category = category;
+      this.name = name;
+      this.threadName = thread.getName();
+      this.threadId = thread.getId();
+      this.startNanos = startNanos;
+      this.durationNanos = durationNanos;
+      this.classesLoaded = classesLoaded;
+      this.failure = failure;
+    }
+
+    /**
+     * Returns the kind of operation, like {@code "module"}, {@code
+     * "jit-binding"}, {@code "plugin"} or {@code "link"}.
+     */
+    public String getCategory() {
+      return category;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getThreadName() {
+      return threadName;
+    }
+
+    /** Returns the start time in nanoseconds since the trace was created. */
+    public long getStartNanos() {
+      return startNanos;
+    }
+
+    public long getDurationNanos() {
+      return durationNanos;
+    }
+
+    /** Returns the number of classes loaded during this event, or -1 if unknown. */
+    public long getClassesLoaded() {
+      return classesLoaded;
+    }
+
+    /** Returns the exception that ended this event, or null if it completed normally. */
+    public String getFailure() {
+      return failure;
+    }
+
+    @Override public String toString() {
+      return category + " " + name + " " + (durationNanos / 1000) + "us"
+          + (failure != null ? " failed: " + failure : "");
+    }
+  }
+
+  /** An event in progress. */
+  static class Span {
+    /** Records nothing, for graphs that aren't traced. */
+    static final Span NONE = new Span();
+
+    void end() {
+      end(null);
+    }
+
+    /** Completes this event. {@code failure} is the exception that ended it, or null. */
+    void end(Throwable failure) {
+    }
+  }
+
+  private final class RecordingSpan extends Span {
+    private final String category;
+    private final String name;
+    private final long start;
+    private final long classesLoadedAtStart;
+
+    RecordingSpan(String category, String name) {
+      this.category = category;
+      this.name = name;
+      this.classesLoadedAtStart = totalLoadedClassCount();
+      this.start = System.nanoTime();
+    }
+
+    @Override void end(Throwable failure) {
+      long end = System.nanoTime();
+      long classesLoaded = classesLoadedAtStart != -1
+          ? totalLoadedClassCount() - classesLoadedAtStart
+          : -1;
+      Event event = new Event(category, name, Thread.currentThread(), start - startNanos,
+          end - start, classesLoaded, failure != null ? failure.toString() : null);
+      synchronized (events) {
+        events.add(event);
+      }
+    }
+  }
+
+  private final class TracingPlugin implements Plugin {
+    private final Plugin delegate;
+    private final boolean aggregate;
+    private final String prefix;
+
+    TracingPlugin(Plugin delegate, boolean aggregate) {
+      this.delegate = delegate;
+      this.aggregate = aggregate;
+      this.prefix = aggregate ? "" : delegate.getClass().getSimpleName() + " ";
+    }
+
+    private Span begin(String category, String name) {
+      return StartupTrace.begin(StartupTrace.this, aggregate ? category : PLUGIN, prefix + name);
+    }
+
+    @Override public Binding<?> getAtInjectBinding(String key, String className,
+        boolean mustBeInjectable) {
+      Span span = begin(JIT_BINDING, key);
+      try {
+        Binding<?> result = delegate.getAtInjectBinding(key, className, mustBeInjectable);
+        span.end();
+        return result;
+      } catch (RuntimeException e) {
+        span.end(e);
+        throw e;
+      }
+    }
+
+    @Override public <T> ModuleAdapter<T> getModuleAdapter(Class<? extends T> moduleClass,
+        T module) {
+      Span span = begin(MODULE, moduleClass.getName());
+      try {
+        ModuleAdapter<T> result = delegate.getModuleAdapter(moduleClass, module);
+        span.end();
+        return result;
+      } catch (RuntimeException e) {
+        span.end(e);
+        throw e;
+      }
+    }
+
+    @Override public StaticInjection getStaticInjection(Class<?> injectedClass) {
+      Span span = begin(STATIC_INJECTION, injectedClass.getName());
+      try {
+        StaticInjection result = delegate.getStaticInjection(injectedClass);
+        span.end();
+        return result;
+      } catch (RuntimeException e) {
+        span.end(e);
+        throw e;
+      }
+    }
+
+    @Override public <T> GraphAdapter<T> getGraphAdapter(Class<T> moduleClass) {
+      Span span = begin(GRAPH, "graph adapter " + moduleClass.getName());
+      try {
+        GraphAdapter<T> result = delegate.getGraphAdapter(moduleClass);
+        span.end();
+        return result;
+      } catch (RuntimeException e) {
+        span.end(e);
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Holds whether the JVM counts loaded classes. This is initialized when the
+   * first span is recorded, so graphs that aren't traced don't load {@code
+   * java.lang.management}.
+   */
+  private static final class ClassCounting {
+    static final boolean SUPPORTED = countsClasses();
+
+    private static boolean countsClasses() {
+      try {
+        return ClassLoadCounter.totalLoadedClassCount() != -1;
+      } catch (LinkageError e) {
+        return false; // No java.lang.management.
+      }
+    }
+  }
+
+  /**
+   * Reads the JVM's class loading counter. This is a separate class so that
+   * {@code java.lang.management}, which isn't available on Android, is only
+   * loaded if it exists.
+   */
+  private static final class ClassLoadCounter {
+    private static final ClassLoadingMXBean CLASS_LOADING = classLoadingMXBean();
+
+    private static ClassLoadingMXBean classLoadingMXBean() {
+      try {
+        return ManagementFactory.getClassLoadingMXBean();
+      } catch (LinkageError e) {
+        return null;
+      }
+    }
+
+    /** Returns the number of classes loaded since the JVM started, or -1 if unknown. */
+    static long totalLoadedClassCount() {
+      return CLASS_LOADING != null ? CLASS_LOADING.getTotalLoadedClassCount() : -1;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An unmodifiable map from strings that iterates in the order of its keys
+ * array. Keys and values are stored in parallel arrays, and keys are found
+ * with an open-addressing table of their positions. The keys and their table
+ * are computed once by {@link #index} and shared by every map with those keys,
+ * so creating a map only allocates its values.
+ */
+final class ArrayMap<V> extends AbstractMap<String, V> {
+  private final String[] keys;
+
+  /** For each slot, one plus the position of a key in {@code keys}, or 0 if empty. */
+  private final int[] table;
+
+  private final Object[] values;
+
+  /**
+   * @param table the result of {@code index(keys)}.
+   * @param values the value of each key, in the same order as {@code keys}.
+   */
+  ArrayMap(String[] keys, int[] table, Object[] values) {
+    this.keys = keys;
+    this.table = table;
+    this.values = values;
+  }
+
+  /** Returns the table to find {@code keys}, which must be distinct. */
+  static int[] index(String[] keys) {
+    int tableSize = 4;
+    while (keys.length * 3L > tableSize * 2L) {
+      tableSize <<= 1;
+    }
+    int[] table = new int[tableSize];
+    int mask = tableSize - 1;
+    for (int k = 0; k < keys.length; k++) {
+      int i = BindingMap.index(keys[k].hashCode(), mask);
+      while (table[i] != 0) {
+        i = (i + 1) & mask;
+      }
+      table[i] = k + 1;
+    }
+    return table;
+  }
+
+  /** Returns the position of {@code key} in {@code keys}, or -1 if it isn't a key. */
+  private int indexOf(Object key) {
+    if (!(key instanceof String)) {
+      return -1;
+    }
+    int mask = table.length - 1;
+    for (int i = BindingMap.index(key.hashCode(), mask); table[i] != 0; i = (i + 1) & mask) {
+      String candidate = keys[table[i] - 1];
+      if (candidate == key || candidate.equals(key)) {
+        return table[i] - 1;
+      }
+    }
+    return -1;
+  }
+
+  @SuppressWarnings("unchecked") // Only 'V's are stored in values.
+  @Override public V get(Object key) {
+    int index = indexOf(key);
+    return index != -1 ? (V) values[index] : null;
+  }
+
+  @Override public boolean containsKey(Object key) {
+    return indexOf(key) != -1;
+  }
+
+  @Override public int size() {
+    return keys.length;
+  }
+
+  @Override public Set<Entry<String, V>> entrySet() {
+    return new AbstractSet<Entry<String, V>>() {
+      @Override public int size() {
+        return keys.length;
+      }
+
+      @Override public Iterator<Entry<String, V>> iterator() {
+        return new Iterator<Entry<String, V>>() {
+          private int next;
+
+          @Override public boolean hasNext() {
+            return next < keys.length;
+          }
+
+          @SuppressWarnings("unchecked") // Only 'V's are stored in values.
+          @Override public Entry<String, V> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Entry<String, V> result
+                = new SimpleImmutableEntry<String, V>(keys[next], (V) values[next]);
+            next++;
+            return result;
+          }
+
+          @Override public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        };
+      }
+    };
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An unmodifiable set that iterates in insertion order. Elements are stored in
+ * an array sized when the set is created, and indexed by an open-addressing
+ * table of their positions, so unlike {@code LinkedHashSet} this doesn't
+ * allocate an entry per element.
+ *
+ * <p>The set is filled by its creator with {@link #addElement}; the methods of
+ * {@code Set} that would modify it throw {@code UnsupportedOperationException}.
+ */
+final class ArraySet<T> extends AbstractSet<T> {
+  private final Object[] elements;
+
+  /** For each slot, one plus the position of an element in {@code elements}, or 0 if empty. */
+  private final int[] table;
+
+  private int size;
+
+  /** Creates a set that holds up to {@code capacity} elements. */
+  ArraySet(int capacity) {
+    elements = new Object[capacity];
+    int tableSize = 4;
+    while (capacity * 3L > tableSize * 2L) {
+      tableSize <<= 1;
+    }
+    table = new int[tableSize];
+  }
+
+  /** Adds {@code element} unless this set already contains an equal element. */
+  void addElement(T element) {
+    int mask = table.length - 1;
+    int i = BindingMap.index(hashCode(element), mask);
+    for (; table[i] != 0; i = (i + 1) & mask) {
+      if (equal(elements[table[i] - 1], element)) {
+        return;
+      }
+    }
+    elements[size] = element;
+    table[i] = ++size;
+  }
+
+  @Override public boolean contains(Object o) {
+    int mask = table.length - 1;
+    for (int i = BindingMap.index(hashCode(o), mask); table[i] != 0; i = (i + 1) & mask) {
+      if (equal(elements[table[i] - 1], o)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override public int size() {
+    return size;
+  }
+
+  @Override public Iterator<T> iterator() {
+    return new Iterator<T>() {
+      private int next;
+
+      @Override public boolean hasNext() {
+        return next < size;
+      }
+
+      @SuppressWarnings("unchecked") // Only 'T's are added to elements.
+      @Override public T next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return (T) elements[next++];
+      }
+
+      @Override public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  private static int hashCode(Object o) {
+    return o != null ? o.hashCode() : 0;
+  }
+
+  private static boolean equal(Object a, Object b) {
+    return a == b || (a != null && a.equals(b));
+  }
+}
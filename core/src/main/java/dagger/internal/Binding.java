@@ -40,11 +40,8 @@ public abstract class Binding<T> implements Provider<T>, MembersInjector<T> {
   /** Set if this binding's {@link #attach} completed without any missing dependencies. */
   private static final int LINKED = 1 << 1;
 
-  /** Set if {@link ProblemDetector} is actively visiting this binding. */
-  private static final int VISITING = 1 << 2;
-
   /** Set if {@link ProblemDetector} has confirmed this binding has no circular dependencies. */
-  private static final int CYCLE_FREE = 1 << 3;
+  private static final int CYCLE_FREE = 1 << 2;
 
   /** The key used to provide instances of 'T', or null if this binding cannot provide instances. */
   public final String provideKey;
@@ -67,6 +64,26 @@ public abstract class Binding<T> implements Provider<T>, MembersInjector<T> {
     this.requiredBy = requiredBy;
   }
 
+  /**
+   * Returns {@code binding.get()}. Call sites that are shared by many kinds of
+   * bindings, like the parameter loops of reflective bindings, are megamorphic:
+   * the VM can't inline their calls to {@code get()}. Singletons are the most
+   * common kind of binding, and once created each returns a constant, so this
+   * checks for them first. That check is a single class comparison, and the
+   * call it guards sees only one class and is inlined.
+   *
+   * <p>This only helps callers that use it. Providers handed to application
+   * code are the bindings themselves, and calls to them are dispatched as
+   * usual. In instrumented graphs singletons are wrapped in {@link
+   * InstrumentedBinding}, so every call takes the virtual path.
+   */
+  public static <T> T provide(Binding<T> binding) {
+    if (binding instanceof Linker.SingletonBinding) {
+      return ((Linker.SingletonBinding<T>) binding).get();
+    }
+    return binding.get();
+  }
+
   /**
    * Links this binding to its dependencies.
    */
@@ -109,14 +126,6 @@ public abstract class Binding<T> implements Provider<T>, MembersInjector<T> {
     return (bits & SINGLETON) != 0;
   }
 
-  public boolean isVisiting() {
-    return (bits & VISITING) != 0;
-  }
-
-  public void setVisiting(boolean visiting) {
-    this.bits = visiting ? (bits | VISITING) : (bits & ~VISITING);
-  }
-
   public boolean isCycleFree() {
     return (bits & CYCLE_FREE) != 0;
   }
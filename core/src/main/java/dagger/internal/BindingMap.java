@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map from keys to bindings that uses open addressing with linear probing.
+ * Keys and bindings are stored in two parallel arrays, so unlike {@code
+ * HashMap} this doesn't allocate an entry per binding. Keys are usually
+ * interned (see {@link Keys}), so a lookup of a present key usually ends with
+ * an identity comparison.
+ *
+ * <p>Mappings can't be removed. This isn't thread safe.
+ */
+public final class BindingMap extends AbstractMap<String, Binding<?>> {
+  private static final int MIN_CAPACITY = 16;
+
+  private String[] keys;
+  private Binding<?>[] values;
+  private int size;
+
+  public BindingMap() {
+    this(0);
+  }
+
+  /** Creates a map that holds {@code expectedSize} bindings without growing. */
+  public BindingMap(int expectedSize) {
+    int capacity = MIN_CAPACITY;
+    while (!fits(expectedSize, capacity)) {
+      capacity <<= 1;
+    }
+    keys = new String[capacity];
+    values = new Binding<?>[capacity];
+  }
+
+  /** Returns true if {@code size} keys fill at most two thirds of {@code capacity} slots. */
+  private static boolean fits(int size, int capacity) {
+    return size * 3L <= capacity * 2L;
+  }
+
+  @Override public int size() {
+    return size;
+  }
+
+  @Override public boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  @Override public Binding<?> get(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    String[] keys = this.keys;
+    int mask = keys.length - 1;
+    for (int i = index(key.hashCode(), mask); ; i = (i + 1) & mask) {
+      String candidate = keys[i];
+      if (candidate == key) {
+        return values[i];
+      }
+      if (candidate == null) {
+        return null;
+      }
+      if (candidate.equals(key)) {
+        return values[i];
+      }
+    }
+  }
+
+  @Override public Binding<?> put(String key, Binding<?> value) {
+    if (key == null) throw new NullPointerException("key");
+    if (value == null) throw new NullPointerException("value");
+    int mask = keys.length - 1;
+    int i = index(key.hashCode(), mask);
+    for (; keys[i] != null; i = (i + 1) & mask) {
+      if (keys[i] == key || keys[i].equals(key)) {
+        Binding<?> replaced = values[i];
+        values[i] = value;
+        return replaced;
+      }
+    }
+    keys[i] = key;
+    values[i] = value;
+    size++;
+    if (!fits(size, keys.length)) {
+      grow();
+    }
+    return null;
+  }
+
+  /**
+   * Returns the slot to start probing for a key. Keys of generated classes
+   * like {@code Node1}, {@code Node2} have consecutive hash codes, which would
+   * fill runs of adjacent slots and make linear probes long. Multiplying by
+   * the golden ratio and taking the well-mixed high bits scatters them across
+   * the table.
+   */
+  static int index(int hashCode, int mask) {
+    return Integer.rotateLeft(hashCode * 0x9e3779b9, 16) & mask;
+  }
+
+  private void grow() {
+    String[] oldKeys = keys;
+    Binding<?>[] oldValues = values;
+    keys = new String[oldKeys.length * 2];
+    values = new Binding<?>[oldKeys.length * 2];
+    int mask = keys.length - 1;
+    for (int j = 0; j < oldKeys.length; j++) {
+      String key = oldKeys[j];
+      if (key != null) {
+        int i = index(key.hashCode(), mask);
+        while (keys[i] != null) {
+          i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = oldValues[j];
+      }
+    }
+  }
+
+  @Override public Set<Entry<String, Binding<?>>> entrySet() {
+    return new AbstractSet<Entry<String, Binding<?>>>() {
+      @Override public int size() {
+        return size;
+      }
+
+      @Override public Iterator<Entry<String, Binding<?>>> iterator() {
+        return new SlotIterator<Entry<String, Binding<?>>>() {
+          @Override Entry<String, Binding<?>> get(String key, Binding<?> value) {
+            return new SimpleImmutableEntry<String, Binding<?>>(key, value);
+          }
+        };
+      }
+    };
+  }
+
+  /** Returns the bindings of this map. Iterating them doesn't allocate entries. */
+  @Override public Collection<Binding<?>> values() {
+    return new AbstractCollection<Binding<?>>() {
+      @Override public int size() {
+        return size;
+      }
+
+      @Override public Iterator<Binding<?>> iterator() {
+        return new SlotIterator<Binding<?>>() {
+          @Override Binding<?> get(String key, Binding<?> value) {
+            return value;
+          }
+        };
+      }
+    };
+  }
+
+  /** Iterates the occupied slots of the map. */
+  private abstract class SlotIterator<T> implements Iterator<T> {
+    private final String[] keys = BindingMap.this.keys;
+    private final Binding<?>[] values = BindingMap.this.values;
+    private int next = advance(0);
+
+    private int advance(int i) {
+      while (i < keys.length && keys[i] == null) {
+        i++;
+      }
+      return i;
+    }
+
+    abstract T get(String key, Binding<?> value);
+
+    @Override public boolean hasNext() {
+      return next < keys.length;
+    }
+
+    @Override public T next() {
+      if (!hasNext()) throw new NoSuchElementException();
+      T result = get(keys[next], values[next]);
+      next = advance(next + 1);
+      return result;
+    }
+
+    @Override public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
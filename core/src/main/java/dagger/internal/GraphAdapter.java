@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates the module adapters and just-in-time bindings of the object graph
+ * rooted at a complete {@code @Module}-annotated class. Implementations are
+ * generated at build time, when the whole graph is known. They construct
+ * generated adapters directly, so creating the graph doesn't load adapter
+ * classes by name or fall back to reflection.
+ */
+public abstract class GraphAdapter<T> {
+
+  /**
+   * Populates {@code map} with new adapters for the root module and for its
+   * includes, recursively. The root module must be first. Modules that don't
+   * have a generated adapter are mapped to null.
+   */
+  protected abstract void getModuleAdapters(Map<Class<?>, ModuleAdapter<?>> map);
+
+  /**
+   * Populates {@code bindings} with new bindings for the {@code @Inject}
+   * types that the graph requires. The returned bindings must be linked before
+   * they can be used to inject values.
+   */
+  public abstract void getJitBindings(List<Binding<?>> bindings);
+
+  /**
+   * Returns the number of keys bound in the linked graph, as computed at build
+   * time. This is used to size the graph's binding maps so they don't grow
+   * while the graph is created and linked.
+   */
+  public abstract int getBindingCount();
+
+  /**
+   * Returns module adapters for the root module and its includes, with their
+   * modules constructed as necessary.
+   *
+   * @param plugin creates adapters for modules without a generated adapter.
+   * @param rootModule the root module, or null to construct it.
+   */
+  @SuppressWarnings("unchecked") // Adapters are keyed by the module class they adapt.
+  public final Map<Class<?>, ModuleAdapter<?>> getAllModuleAdapters(Plugin plugin, T rootModule) {
+    Map<Class<?>, ModuleAdapter<?>> result = new LinkedHashMap<Class<?>, ModuleAdapter<?>>();
+    getModuleAdapters(result);
+    boolean root = true;
+    for (Map.Entry<Class<?>, ModuleAdapter<?>> entry : result.entrySet()) {
+      Object module = root ? rootModule : null;
+      root = false;
+      ModuleAdapter<Object> adapter = (ModuleAdapter<Object>) entry.getValue();
+      if (adapter == null) {
+        entry.setValue(plugin.getModuleAdapter((Class<Object>) entry.getKey(), module));
+      } else {
+        adapter.module = (module != null) ? module : adapter.newModule();
+      }
+    }
+    return result;
+  }
+}
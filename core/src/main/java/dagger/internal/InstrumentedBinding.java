@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import java.util.Set;
+
+/**
+ * A binding that reports the duration of each call to {@link #get} and {@link
+ * #injectMembers} on its delegate to a {@link Recorder}. Durations include
+ * the time spent in the delegate's dependencies.
+ */
+public final class InstrumentedBinding<T> extends Binding<T> {
+  private final Binding<T> binding;
+  private final Recorder recorder;
+
+  public InstrumentedBinding(Binding<T> binding, Recorder recorder) {
+    super(binding.provideKey, binding.membersKey, binding.isSingleton(), binding.requiredBy);
+    this.binding = binding;
+    this.recorder = recorder;
+  }
+
+  @Override public void attach(Linker linker) {
+    binding.attach(linker);
+  }
+
+  @Override public T get() {
+    long allocatedBytes = recorder.allocatedBytes();
+    long start = System.nanoTime();
+    try {
+      return binding.get();
+    } finally {
+      recorder.record(true, System.nanoTime() - start, allocatedBytes);
+    }
+  }
+
+  @Override public void injectMembers(T t) {
+    long allocatedBytes = recorder.allocatedBytes();
+    long start = System.nanoTime();
+    try {
+      binding.injectMembers(t);
+    } finally {
+      recorder.record(false, System.nanoTime() - start, allocatedBytes);
+    }
+  }
+
+  @Override public void getDependencies(Set<Binding<?>> get, Set<Binding<?>> injectMembers) {
+    binding.getDependencies(get, injectMembers);
+  }
+
+  @Override public String toString() {
+    return binding.toString();
+  }
+
+  /** Receives the measurements of an instrumented binding. Must be thread safe. */
+  public interface Recorder {
+    /**
+     * Returns the number of bytes allocated by the current thread so far, or 0
+     * if allocations aren't measured.
+     */
+    long allocatedBytes();
+
+    /**
+     * Records a completed call.
+     *
+     * @param provision true for a call to {@code get()}, false for a call to
+     *     {@code injectMembers()}.
+     * @param allocatedBytesBefore the value of {@link #allocatedBytes} when
+     *     the call started.
+     */
+    void record(boolean provision, long nanos, long allocatedBytesBefore);
+  }
+}
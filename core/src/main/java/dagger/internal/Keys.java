@@ -22,6 +22,7 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.Map;
 import java.util.Set;
 import javax.inject.Provider;
 import javax.inject.Qualifier;
@@ -38,12 +39,19 @@ import javax.inject.Qualifier;
  * Bindings from {@code @Provides} methods are of the first two types. Bindings
  * created from {@code @Inject}-annotated members of a class are of the first
  * and last types.
+ *
+ * <p>All keys returned by this class are interned. Generated adapters use
+ * string literals for their keys, which are also interned, so equal keys are
+ * usually the same instance and map lookups succeed on the identity check
+ * without comparing characters.
  */
 public final class Keys {
   private static final String PROVIDER_PREFIX = Provider.class.getName() + "<";
   private static final String MEMBERS_INJECTOR_PREFIX = MembersInjector.class.getName() + "<";
   private static final String LAZY_PREFIX = Lazy.class.getName() + "<";
   private static final String SET_PREFIX = Set.class.getName() + "<";
+  private static final String MAP_PREFIX
+      = Map.class.getName() + "<" + String.class.getName() + ", ";
 
   private static final LruCache<Class<? extends Annotation>, Boolean> IS_QUALIFIER_ANNOTATION
       = new LruCache<Class<? extends Annotation>, Boolean>(Integer.MAX_VALUE) {
@@ -63,21 +71,21 @@ public final class Keys {
 
   /** Returns a key for the members of {@code type}. */
   public static String getMembersKey(Class<?> key) {
-    return "members/" + get(key);
+    return ("members/" + get(key)).intern();
   }
 
   /** Returns a key for {@code type} annotated by {@code annotation}. */
   public static String get(Type type, Annotation annotation) {
     type = boxIfPrimitive(type);
     if (annotation == null && type instanceof Class && !((Class<?>) type).isArray()) {
-      return ((Class<?>) type).getName();
+      return ((Class<?>) type).getName().intern();
     }
     StringBuilder result = new StringBuilder();
     if (annotation != null) {
       result.append(annotation).append("/");
     }
     typeToString(type, result, true);
-    return result.toString();
+    return result.toString().intern();
   }
 
   /**
@@ -97,7 +105,28 @@ public final class Keys {
     result.append(SET_PREFIX);
     typeToString(type, result, true);
     result.append(">");
-    return result.toString();
+    return result.toString().intern();
+  }
+
+  /**
+   * Returns a key for {@code type} annotated with {@code annotations}, as the
+   * value type of a {@code Map} with {@code String} keys, reporting failures
+   * against {@code subject}.
+   *
+   * @param annotations the annotations on a single method, field or parameter.
+   *     This array may contain at most one qualifier annotation.
+   */
+  public static String getMapKey(Type type, Annotation[] annotations, Object subject) {
+    Annotation qualifier = extractQualifier(annotations, subject);
+    type = boxIfPrimitive(type);
+    StringBuilder result = new StringBuilder();
+    if (qualifier != null) {
+      result.append(qualifier).append("/");
+    }
+    result.append(MAP_PREFIX);
+    typeToString(type, result, true);
+    result.append(">");
+    return result.toString().intern();
   }
 
   /**
@@ -224,7 +253,7 @@ public final class Keys {
    * @param prefix the prefix to strip.
    */
   private static String extractKey(String key, int start, String delegatePrefix, String prefix) {
-    return delegatePrefix + key.substring(start + prefix.length(), key.length() - 1);
+    return (delegatePrefix + key.substring(start + prefix.length(), key.length() - 1)).intern();
   }
 
   /** Returns true if {@code string.substring(offset).startsWith(substring)}. */
@@ -19,7 +19,9 @@ package dagger.internal;
 import dagger.Lazy;
 
 /**
- * Injects a Lazy wrapper for a type T
+ * Injects a Lazy wrapper for a type T. Each {@code Lazy} computes its value at
+ * most once, even when it's shared by threads. If T is bound as a singleton,
+ * its binding already does that, so all injections share one {@code Lazy}.
  */
 final class LazyBinding<T> extends Binding<Lazy<T>> {
 
@@ -28,6 +30,9 @@ final class LazyBinding<T> extends Binding<Lazy<T>> {
   private final String lazyKey;
   private Binding<T> delegate;
 
+  /** The Lazy returned by every call to get(), or null if T isn't a singleton. */
+  private Lazy<T> singletonLazy;
+
   public LazyBinding(String key, Object requiredBy, String lazyKey) {
     super(key, null, false, requiredBy);
     this.lazyKey = lazyKey;
@@ -37,6 +42,9 @@ final class LazyBinding<T> extends Binding<Lazy<T>> {
   @Override
   public void attach(Linker linker) {
     delegate = (Binding<T>) linker.requestBinding(lazyKey, requiredBy);
+    singletonLazy = (delegate != null && delegate.isSingleton())
+        ? new SingletonLazy<T>(delegate)
+        : null;
   }
 
   @Override public void injectMembers(Lazy<T> t) {
@@ -45,17 +53,52 @@ final class LazyBinding<T> extends Binding<Lazy<T>> {
 
   @Override
   public Lazy<T> get() {
-    return new Lazy<T>() {
-      private Object cacheValue = NOT_PRESENT;
-
-      @SuppressWarnings("unchecked") // Delegate is of type T
-      @Override
-      public T get() {
-        return (T) ((cacheValue != NOT_PRESENT) ? cacheValue : (cacheValue = delegate.get()));
-      }
-    };
+    Lazy<T> result = singletonLazy;
+    return (result != null) ? result : new MemoizingLazy<T>(delegate);
   }
 
   // public void getDependencies() not overridden.
   // We don't add 'delegate' because it isn't actually used by get() or injectMembers().
+
+  /** Gets a singleton from its binding, which creates it at most once. */
+  private static final class SingletonLazy<T> implements Lazy<T> {
+    private final Binding<T> delegate;
+
+    SingletonLazy(Binding<T> delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override public T get() {
+      return delegate.get();
+    }
+  }
+
+  /**
+   * Computes its value on the first call to get(). When threads race, only one
+   * computes the value and the others wait for it. Once published, calls to
+   * get() don't acquire a lock.
+   */
+  private static final class MemoizingLazy<T> implements Lazy<T> {
+    private final Binding<T> delegate;
+    private volatile Object value = NOT_PRESENT;
+
+    MemoizingLazy(Binding<T> delegate) {
+      this.delegate = delegate;
+    }
+
+    @SuppressWarnings("unchecked") // value is either 'NOT_PRESENT' or a 'T'.
+    @Override public T get() {
+      // Double-checked locking. Read the volatile field once on the fast path.
+      Object result = value;
+      if (result == NOT_PRESENT) {
+        synchronized (this) {
+          result = value;
+          if (result == NOT_PRESENT) {
+            value = result = delegate.get();
+          }
+        }
+      }
+      return (T) result;
+    }
+  }
 }
@@ -16,12 +16,18 @@
 package dagger.internal;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Links bindings to their dependencies.
@@ -30,11 +36,13 @@ public final class Linker {
   private static final Object UNINITIALIZED = new Object();
 
   /**
-   * The base {@code Linker} which will be consulted to satisfy bindings not
-   * otherwise satisfiable from this {@code Linker}. The top-most {@code Linker}
-   * in a chain will have a null base linker.
+   * The linked bindings of the base {@code Linker} and its own ancestors,
+   * which will be consulted to satisfy bindings not otherwise satisfiable from
+   * this {@code Linker}. Because the chain is flattened into one map, a lookup
+   * costs one probe however deeply this linker is nested. The top-most {@code
+   * Linker} in a chain will have null ancestors.
    */
-  private final Linker base;
+  private final BindingMap ancestors;
 
   /** Bindings requiring a call to attach(). May contain deferred bindings. */
   private final Queue<Binding<?>> toLink = new LinkedList<Binding<?>>();
@@ -46,19 +54,72 @@ public final class Linker {
   private final List<String> errors = new ArrayList<String>();
 
   /** All of the object graph's bindings. This may contain unlinked bindings. */
-  private final Map<String, Binding<?>> bindings = new HashMap<String, Binding<?>>();
+  private final BindingMap bindings;
+
+  /**
+   * This linker's bindings merged with its ancestors, or null if they haven't
+   * been merged since a key was last bound. Shared by child linkers. Guarded
+   * by this.
+   */
+  private BindingMap linkedBindings;
 
   private final Plugin plugin;
 
   private final ErrorHandler errorHandler;
 
+  /** Wraps bindings as they're installed, or null to install them unwrapped. */
+  private final Instrumentation instrumentation;
+
   public Linker(Linker base, Plugin plugin, ErrorHandler errorHandler) {
+    this(base, plugin, errorHandler, null);
+  }
+
+  /**
+   * @param instrumentation wraps each binding as it's installed in this
+   *     linker, or null to install bindings as they are.
+   */
+  public Linker(Linker base, Plugin plugin, ErrorHandler errorHandler,
+      Instrumentation instrumentation) {
+    this(base, plugin, errorHandler, instrumentation, 0);
+  }
+
+  /**
+   * @param base the linker to consult for bindings that this linker doesn't
+   *     have, or null. It must be linked; bindings it links later aren't
+   *     visible to this linker.
+   * @param expectedBindingCount the number of keys this linker is expected to
+   *     bind once linked, or 0 if unknown. Its binding map is sized to hold
+   *     them without growing.
+   */
+  public Linker(Linker base, Plugin plugin, ErrorHandler errorHandler,
+      Instrumentation instrumentation, int expectedBindingCount) {
     if (plugin == null) throw new NullPointerException("plugin");
     if (errorHandler == null) throw new NullPointerException("errorHandler");
 
-    this.base = base;
+    this.ancestors = (base != null) ? base.linkedBindings() : null;
     this.plugin = plugin;
     this.errorHandler = errorHandler;
+    this.instrumentation = instrumentation;
+    this.bindings = new BindingMap(expectedBindingCount);
+  }
+
+  /**
+   * Returns the bindings of this linker and of its ancestors. Where both bind
+   * a key, this linker's binding takes precedence. The returned map is merged
+   * when the first child linker is created and shared by later ones. It must
+   * not be modified.
+   */
+  private synchronized BindingMap linkedBindings() {
+    if (linkedBindings == null) {
+      int size = bindings.size() + ((ancestors != null) ? ancestors.size() : 0);
+      BindingMap merged = new BindingMap(size);
+      if (ancestors != null) {
+        merged.putAll(ancestors);
+      }
+      merged.putAll(bindings);
+      linkedBindings = merged;
+    }
+    return linkedBindings;
   }
 
   /**
@@ -68,7 +129,20 @@ public final class Linker {
    */
   public void installBindings(Map<String, ? extends Binding<?>> toInstall) {
     for (Map.Entry<String, ? extends Binding<?>> entry : toInstall.entrySet()) {
-      bindings.put(entry.getKey(), scope(entry.getValue()));
+      bindings.put(entry.getKey(), instrument(scope(entry.getValue())));
+    }
+    linkedBindings = null;
+  }
+
+  /**
+   * Adds the just-in-time bindings in {@code toInstall} to this linker. Unlike
+   * {@link #installBindings} these don't replace bindings for the same keys;
+   * they're installed as if they had been created by the plugin on demand.
+   * They're linked when they're first requested.
+   */
+  public void installJitBindings(Collection<? extends Binding<?>> toInstall) {
+    for (Binding<?> binding : toInstall) {
+      putBinding(binding);
     }
   }
 
@@ -80,12 +154,29 @@ public final class Linker {
    * @return all bindings known by this linker, which will all be linked.
    */
   public Map<String, Binding<?>> linkAll() {
+    return linkAll(null);
+  }
+
+  /**
+   * Links requested bindings and installed bindings, plus all of their
+   * transitive dependencies. JIT bindings are created concurrently on {@code
+   * executor}, but are installed and linked in the same order as they would
+   * be by {@link #linkAll()}. Errors are reported the same way too.
+   *
+   * <p>Creating JIT bindings dominates linking large graphs because each one
+   * loads a class, and may fall back to reflection.
+   *
+   * @param executor executes JIT binding creation, or null to create JIT
+   *     bindings on the calling thread.
+   * @return all bindings known by this linker, which will all be linked.
+   */
+  public Map<String, Binding<?>> linkAll(Executor executor) {
     for (Binding<?> binding : bindings.values()) {
       if (!binding.isLinked()) {
         toLink.add(binding);
       }
     }
-    linkRequested();
+    linkRequested(executor);
     return bindings;
   }
 
@@ -94,8 +185,17 @@ public final class Linker {
    * creates JIT bindings as necessary to fill in the gaps.
    */
   public void linkRequested() {
+    linkRequested(null);
+  }
+
+  private void linkRequested(Executor executor) {
     assertLockHeld();
 
+    // JIT bindings being created on the executor, by the deferred binding that requested them.
+    Map<DeferredBinding, FutureTask<Binding<?>>> jitBindings = (executor != null)
+        ? new HashMap<DeferredBinding, FutureTask<Binding<?>>>()
+        : null;
+
     Binding<?> binding;
     while ((binding = toLink.poll()) != null) {
       if (binding instanceof DeferredBinding) {
@@ -106,7 +206,9 @@ public final class Linker {
           continue; // A binding for this key has since been linked.
         }
         try {
-          Binding<?> jitBinding = createJitBinding(key, binding.requiredBy, mustBeInjectable);
+          Binding<?> jitBinding = (jitBindings != null)
+              ? getJitBinding(executor, jitBindings, deferredBinding)
+              : createJitBinding(key, binding.requiredBy, mustBeInjectable);
           // Fail if the type of binding we got wasn't capable of what was requested.
           if (!key.equals(jitBinding.provideKey) && !key.equals(jitBinding.membersKey)) {
             throw new IllegalStateException("Unable to create binding for " + key);
@@ -118,6 +220,7 @@ public final class Linker {
           if (e.getMessage() != null) {
             addError(e.getMessage() + " required by " + binding.requiredBy);
             bindings.put(key, Binding.UNRESOLVED);
+            linkedBindings = null;
           } else if (e instanceof RuntimeException) {
             throw (RuntimeException) e;
           } else {
@@ -138,6 +241,13 @@ public final class Linker {
       }
     }
 
+    if (jitBindings != null) {
+      // These keys were bound by the time their deferred bindings were dequeued.
+      for (FutureTask<Binding<?>> unused : jitBindings.values()) {
+        unused.cancel(false);
+      }
+    }
+
     try {
       errorHandler.handleErrors(errors);
     } finally {
@@ -145,6 +255,59 @@ public final class Linker {
     }
   }
 
+  /**
+   * Returns the JIT binding for {@code deferred}. If it isn't already being
+   * created, this starts creating the JIT bindings of all deferred bindings in
+   * the queue on {@code executor}, so that the bindings required by the
+   * current wave of attached bindings are created concurrently.
+   */
+  private Binding<?> getJitBinding(Executor executor,
+      Map<DeferredBinding, FutureTask<Binding<?>>> jitBindings, DeferredBinding deferred)
+      throws Exception {
+    FutureTask<Binding<?>> future = jitBindings.remove(deferred);
+    if (future == null) {
+      for (Binding<?> queued : toLink) {
+        if (!(queued instanceof DeferredBinding) || jitBindings.containsKey(queued)) {
+          continue;
+        }
+        DeferredBinding queuedDeferred = (DeferredBinding) queued;
+        if (bindings.containsKey(queuedDeferred.deferredKey)) {
+          continue;
+        }
+        FutureTask<Binding<?>> task = newJitBindingTask(queuedDeferred);
+        try {
+          executor.execute(task);
+        } catch (RejectedExecutionException e) {
+          break; // The executor is saturated. Create the remaining bindings on this thread.
+        }
+        jitBindings.put(queuedDeferred, task);
+      }
+      future = newJitBindingTask(deferred);
+    }
+
+    // Run the task on this thread if the executor hasn't started it yet. This
+    // is a no-op if the task is running or done.
+    future.run();
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw (Error) cause;
+    }
+  }
+
+  private FutureTask<Binding<?>> newJitBindingTask(final DeferredBinding deferred) {
+    return new FutureTask<Binding<?>>(new Callable<Binding<?>>() {
+      @Override public Binding<?> call() throws Exception {
+        return createJitBinding(deferred.deferredKey, deferred.requiredBy,
+            deferred.mustBeInjectable);
+      }
+    });
+  }
+
   /**
    * Don't permit bindings to be linked without a lock. Callers should lock
    * before requesting any bindings, link the requested bindings, retrieve
@@ -155,8 +318,9 @@ public final class Linker {
   }
 
   /**
-   * Creates a just-in-time binding for the key in {@code deferred}. The type of binding
-   * to be created depends on the key's type:
+   * Creates a just-in-time binding for the key in {@code deferred}. This may
+   * be called concurrently, and must not read or write the linker's state.
+   * The type of binding to be created depends on the key's type:
    * <ul>
    *   <li>Injections of {@code Provider<Foo>}, {@code MembersInjector<Bar>}, and
    *       {@code Lazy<Blah>} will delegate to the bindings of {@code Foo}, {@code Bar}, and
@@ -209,13 +373,10 @@ public final class Linker {
   public Binding<?> requestBinding(String key, Object requiredBy, boolean mustBeInjectable) {
     assertLockHeld();
 
-    Binding<?> binding = null;
-    for (Linker linker = this; linker != null; linker = linker.base) {
-      binding = linker.bindings.get(key);
-      if (binding != null) {
-        if (linker != this && !binding.isLinked()) throw new AssertionError();
-        break;
-      }
+    Binding<?> binding = bindings.get(key);
+    if (binding == null && ancestors != null) {
+      binding = ancestors.get(key);
+      if (binding != null && !binding.isLinked()) throw new AssertionError();
     }
 
     if (binding == null) {
@@ -234,7 +395,7 @@ public final class Linker {
   }
 
   private <T> void putBinding(Binding<T> binding) {
-    binding = scope(binding);
+    binding = instrument(scope(binding));
 
     // At binding insertion time it's possible that another binding for the same
     // key to already exist. This occurs when an @Provides method returns a type T
@@ -245,6 +406,7 @@ public final class Linker {
     if (binding.membersKey != null) {
       putIfAbsent(bindings, binding.membersKey, binding);
     }
+    linkedBindings = null;
   }
 
   /**
@@ -258,6 +420,14 @@ public final class Linker {
     return new SingletonBinding<T>(binding);
   }
 
+  /**
+   * Returns {@code binding} wrapped by this linker's instrumentation, or
+   * {@code binding} itself if this linker isn't instrumented.
+   */
+  private <T> Binding<T> instrument(Binding<T> binding) {
+    return instrumentation != null ? instrumentation.instrument(binding) : binding;
+  }
+
   /**
    * Puts the mapping {@code key, value} in {@code map} if no mapping for {@code
    * key} already exists.
@@ -276,10 +446,12 @@ public final class Linker {
 
   /**
    * A Binding that implements singleton behaviour around an existing binding.
+   * The instance is created at most once, even when multiple threads race to
+   * get it. Once published, calls to {@link #get} don't acquire a lock.
    */
-  private static class SingletonBinding<T> extends Binding<T> {
+  static final class SingletonBinding<T> extends Binding<T> {
     private final Binding<T> binding;
-    private Object onlyInstance = UNINITIALIZED;
+    private volatile Object onlyInstance = UNINITIALIZED;
 
     private SingletonBinding(Binding<T> binding) {
       super(binding.provideKey, binding.membersKey, true, binding.requiredBy);
@@ -296,11 +468,17 @@ public final class Linker {
 
     @SuppressWarnings("unchecked") // onlyInstance is either 'UNINITIALIZED' or a 'T'.
     @Override public T get() {
-      // TODO (cgruber): Fix concurrency risk.
-      if (onlyInstance == UNINITIALIZED) {
-        onlyInstance = binding.get();
+      // Double-checked locking. Read the volatile field once on the fast path.
+      Object result = onlyInstance;
+      if (result == UNINITIALIZED) {
+        synchronized (this) {
+          result = onlyInstance;
+          if (result == UNINITIALIZED) {
+            onlyInstance = result = binding.get();
+          }
+        }
       }
-      return (T) onlyInstance;
+      return (T) result;
     }
 
     @Override public void getDependencies(Set<Binding<?>> get, Set<Binding<?>> injectMembers) {
@@ -324,6 +502,16 @@ public final class Linker {
     void handleErrors(List<String> errors);
   }
 
+  /** Observes calls to bindings by wrapping them. */
+  public interface Instrumentation {
+    /**
+     * Returns a binding that delegates to {@code binding}. The returned
+     * binding must be a singleton if {@code binding} is, and must delegate
+     * {@link Binding#attach} and {@link Binding#getDependencies}.
+     */
+    <T> Binding<T> instrument(Binding<T> binding);
+  }
+
   private static class DeferredBinding extends Binding<Object> {
     final String deferredKey;
     final boolean mustBeInjectable;
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@code Binding<Map<String, V>>} which contains contributors (other
+ * bindings marked with {@code @Provides(type = MAP)}), each under its own
+ * {@code @MapKey}. The keys are indexed once when this binding is attached,
+ * so each provision only gets the values.
+ *
+ * <p>If every contributor is a singleton, the map is built once and shared by
+ * all injections. Otherwise each provision builds a new map.
+ */
+public final class MapBinding<V> extends Binding<Map<String, V>> {
+
+  /**
+   * Adds {@code binding} to the map bound to {@code mapKey} under {@code
+   * entryKey}.
+   *
+   * @throws IllegalArgumentException if the map already has a contributor for
+   *     {@code entryKey}.
+   */
+  @SuppressWarnings("unchecked") // The map key's type tells us it's a MapBinding<V>.
+  public static <V> void add(Map<String, Binding<?>> bindings, String mapKey, String entryKey,
+      Binding<?> binding) {
+    MapBinding<V> mapBinding = (MapBinding<V>) bindings.get(mapKey);
+    if (mapBinding == null) {
+      mapBinding = new MapBinding<V>(mapKey);
+      bindings.put(mapBinding.provideKey, mapBinding);
+    }
+    Binding<?> clobbered = mapBinding.contributors.put(entryKey, Linker.scope(binding));
+    if (clobbered != null) {
+      mapBinding.contributors.put(entryKey, clobbered); // Put things back as they were.
+      throw new IllegalArgumentException("Duplicate map key \"" + entryKey + "\" for "
+          + mapKey + ":\n    " + clobbered + "\n    " + binding);
+    }
+  }
+
+  private final Map<String, Binding<?>> contributors = new LinkedHashMap<String, Binding<?>>();
+
+  /** The map keys and contributors, copied when this binding is attached. */
+  private String[] keys;
+  private Binding<?>[] contributorArray;
+  private int[] table;
+
+  /** True if every contributor always provides the same instance. */
+  private boolean allSingletons;
+
+  /** The shared map, or null if it hasn't been built or isn't shared. */
+  private volatile Map<String, V> sharedMap;
+
+  private final AtomicLong buildCount = new AtomicLong();
+
+  public MapBinding(String key) {
+    super(key, null, false, null);
+  }
+
+  @Override public void attach(Linker linker) {
+    boolean allSingletons = true;
+    for (Binding<?> contributor : contributors.values()) {
+      contributor.attach(linker);
+      allSingletons &= contributor.isSingleton();
+    }
+    this.keys = contributors.keySet().toArray(new String[contributors.size()]);
+    this.contributorArray = contributors.values().toArray(new Binding<?>[contributors.size()]);
+    this.table = ArrayMap.index(keys);
+    this.allSingletons = allSingletons;
+  }
+
+  @Override public Map<String, V> get() {
+    if (!allSingletons) {
+      return build();
+    }
+    // Double-checked locking. Read the volatile field once on the fast path.
+    Map<String, V> result = sharedMap;
+    if (result == null) {
+      synchronized (this) {
+        result = sharedMap;
+        if (result == null) {
+          sharedMap = result = build();
+        }
+      }
+    }
+    return result;
+  }
+
+  private Map<String, V> build() {
+    buildCount.incrementAndGet();
+    Binding<?>[] contributorArray = this.contributorArray;
+    Object[] values = new Object[contributorArray.length];
+    for (int i = 0; i < contributorArray.length; i++) {
+      values[i] = Binding.provide(contributorArray[i]); // Let runtime exceptions through.
+    }
+    return new ArrayMap<V>(keys, table, values);
+  }
+
+  /**
+   * Returns the number of maps built by this binding. This is 1 after the
+   * first provision if every contributor is a singleton, and the number of
+   * provisions otherwise.
+   */
+  public long getBuildCount() {
+    return buildCount.get();
+  }
+
+  @Override public void getDependencies(
+      Set<Binding<?>> getBindings, Set<Binding<?>> injectMembersBindings) {
+    getBindings.addAll(contributors.values());
+  }
+
+  @Override public void injectMembers(Map<String, V> t) {
+    throw new UnsupportedOperationException("Cannot inject into a multi-binder Map");
+  }
+
+  @Override public String toString() {
+    return "MapBinding" + contributors;
+  }
+}
@@ -35,4 +35,9 @@ public interface Plugin {
    * Returns the static injection for {@code injectedClass}.
    */
   StaticInjection getStaticInjection(Class<?> injectedClass);
+
+  /**
+   * Returns the graph adapter for the complete module {@code moduleClass}.
+   */
+  <T> GraphAdapter<T> getGraphAdapter(Class<T> moduleClass);
 }
\ No newline at end of file
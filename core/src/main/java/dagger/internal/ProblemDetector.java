@@ -17,60 +17,438 @@ package dagger.internal;
 
 import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Detects problems like cyclic dependencies.
  */
 public final class ProblemDetector {
   public void detectProblems(Collection<Binding<?>> bindings) {
-    detectCircularDependencies(bindings, new ArrayList<Binding<?>>());
+    detectCircularDependencies(bindings);
   }
 
-  public void detectCircularDependencies(Collection<Binding<?>> bindings, List<Binding<?>> path) {
-    for (Binding<?> binding : bindings) {
-      if (binding.isCycleFree()) {
-        continue;
+  /**
+   * Throws if any of {@code bindings} depends on itself, directly or through
+   * other bindings. The message describes a cycle in each group of bindings
+   * that depend on each other. Bindings that are free of cycles are marked, so
+   * later calls don't visit them again.
+   *
+   * @throws IllegalStateException if there are dependency cycles.
+   */
+  public void detectCircularDependencies(Collection<Binding<?>> bindings) {
+    String cycles = new CycleFinder(bindings.size()).findCycles(bindings);
+    if (cycles.length() != 0) {
+      throw new IllegalStateException(cycles);
+    }
+  }
+
+  /**
+   * Like {@link #detectProblems(Collection)}, but checks bindings concurrently
+   * on {@code executor}. The bindings are split into weakly connected
+   * components, which share no dependencies, and each batch of components is
+   * checked as a separate task. Problems are reported in the order of the
+   * bindings' components in {@code bindings}, however the tasks are scheduled.
+   *
+   * @throws IllegalStateException if there are dependency cycles.
+   */
+  public void detectProblems(Collection<Binding<?>> bindings, Executor executor) {
+    List<List<Binding<?>>> batches = new Components().partition(bindings);
+    if (batches.size() <= 1) {
+      detectProblems(bindings);
+      return;
+    }
+
+    List<FutureTask<String>> tasks = new ArrayList<FutureTask<String>>();
+    for (final List<Binding<?>> batch : batches) {
+      FutureTask<String> task = new FutureTask<String>(new Callable<String>() {
+        @Override public String call() {
+          return new CycleFinder(batch.size()).findCycles(batch);
+        }
+      });
+      try {
+        executor.execute(task);
+      } catch (RejectedExecutionException e) {
+        // The executor is saturated. This thread runs the task below.
       }
+      tasks.add(task);
+    }
 
-      if (binding.isVisiting()) {
-        int index = path.indexOf(binding);
-        StringBuilder message = new StringBuilder()
-            .append("Dependency cycle:");
-        for (int i = index; i < path.size(); i++) {
-          message.append("\n    ").append(i - index).append(". ")
-              .append(path.get(i).provideKey).append(" bound by ").append(path.get(i));
+    StringBuilder cycles = new StringBuilder();
+    for (FutureTask<String> task : tasks) {
+      // Run the task on this thread if the executor hasn't started it yet. This
+      // is a no-op if the task is running or done.
+      task.run();
+      String batchCycles = getUninterruptibly(task);
+      if (batchCycles.length() != 0) {
+        if (cycles.length() != 0) {
+          cycles.append("\n");
         }
-        message.append("\n    ").append(0).append(". ").append(binding.provideKey);
-        throw new IllegalStateException(message.toString());
+        cycles.append(batchCycles);
       }
+    }
+    if (cycles.length() != 0) {
+      throw new IllegalStateException(cycles.toString());
+    }
+  }
 
-      binding.setVisiting(true);
-      path.add(binding);
-      try {
-        ArraySet<Binding<?>> dependencies = new ArraySet<Binding<?>>();
-        binding.getDependencies(dependencies, dependencies);
-        detectCircularDependencies(dependencies, path);
-        binding.setCycleFree(true);
-      } finally {
-        path.remove(path.size() - 1);
-        binding.setVisiting(false);
+  private static String getUninterruptibly(FutureTask<String> task) {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while detecting problems", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw (Error) cause;
+    }
+  }
+
+  /**
+   * Splits bindings into weakly connected components with a union-find over
+   * their dependencies. Bindings in different components don't depend on each
+   * other, directly or transitively, so components can be checked for cycles
+   * independently.
+   */
+  private static final class Components extends AbstractSet<Binding<?>> {
+    /** Components are packed into batches of at least this many bindings. */
+    private static final int MIN_BATCH_SIZE = 1024;
+
+    private final Map<Binding<?>, Integer> ids = new IdentityHashMap<Binding<?>, Integer>();
+    private int[] parent = new int[16];
+    private int[] componentSize = new int[16];
+    /** The binding whose dependencies are being added. */
+    private int current;
+
+    /**
+     * Returns the bindings that may be on a cycle, in batches of whole
+     * components. Batches, and the bindings in each batch, keep the order of
+     * {@code bindings}.
+     */
+    List<List<Binding<?>>> partition(Collection<Binding<?>> bindings) {
+      List<Binding<?>> roots = new ArrayList<Binding<?>>(bindings.size());
+      for (Binding<?> binding : bindings) {
+        if (binding == null || binding.isCycleFree()) {
+          continue;
+        }
+        roots.add(binding);
+        current = id(binding);
+        binding.getDependencies(this, this);
+      }
+
+      // Group roots by component, ordering components by their first root.
+      Map<Integer, List<Binding<?>>> components =
+          new LinkedHashMap<Integer, List<Binding<?>>>();
+      for (Binding<?> root : roots) {
+        Integer component = find(ids.get(root));
+        List<Binding<?>> members = components.get(component);
+        if (members == null) {
+          members = new ArrayList<Binding<?>>();
+          components.put(component, members);
+        }
+        members.add(root);
+      }
+
+      List<List<Binding<?>>> batches = new ArrayList<List<Binding<?>>>();
+      List<Binding<?>> batch = null;
+      for (List<Binding<?>> members : components.values()) {
+        if (batch == null || batch.size() >= MIN_BATCH_SIZE) {
+          batch = new ArrayList<Binding<?>>();
+          batches.add(batch);
+        }
+        batch.addAll(members);
+      }
+      return batches;
+    }
+
+    /** Joins the component of the current binding with that of {@code dependency}. */
+    @Override public boolean add(Binding<?> dependency) {
+      if (dependency != null && !dependency.isCycleFree()) {
+        union(current, id(dependency));
+      }
+      return true;
+    }
+
+    private int id(Binding<?> binding) {
+      Integer id = ids.get(binding);
+      if (id == null) {
+        id = ids.size();
+        ids.put(binding, id);
+        if (id == parent.length) {
+          parent = Arrays.copyOf(parent, id * 2);
+          componentSize = Arrays.copyOf(componentSize, id * 2);
+        }
+        parent[id] = id;
+        componentSize[id] = 1;
+      }
+      return id;
+    }
+
+    private int find(int id) {
+      while (parent[id] != id) {
+        parent[id] = parent[parent[id]]; // Path halving.
+        id = parent[id];
+      }
+      return id;
+    }
+
+    private void union(int a, int b) {
+      a = find(a);
+      b = find(b);
+      if (a == b) {
+        return;
+      }
+      if (componentSize[a] < componentSize[b]) {
+        int swap = a;
+        a = b;
+        b = swap;
+      }
+      parent[b] = a;
+      componentSize[a] += componentSize[b];
+    }
+
+    @Override public Iterator<Binding<?>> iterator() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override public int size() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * Finds the strongly connected components of the dependency graph with
+   * Tarjan's algorithm. It keeps its own stack rather than recursing, so deep
+   * graphs can't overflow the thread's stack. Each binding is visited and asked
+   * for its dependencies once, so this takes time linear in the number of
+   * bindings and dependencies.
+   *
+   * <p>Bindings are numbered in the order they're visited. That number is
+   * also the binding's Tarjan index, and indexes the arrays below.
+   */
+  private static final class CycleFinder {
+    private final Map<Binding<?>, Integer> ids = new IdentityHashMap<Binding<?>, Integer>();
+    private final List<Binding<?>> nodes = new ArrayList<Binding<?>>();
+
+    /** The dependencies of every visited binding, as consecutive runs. */
+    private final List<Binding<?>> edges = new ArrayList<Binding<?>>();
+    private final EdgeCollector edgeCollector = new EdgeCollector(edges);
+    private int[] edgeStart;
+    private int[] edgeEnd;
+    private int[] nextEdge;
+
+    private int[] lowLink;
+    /** The id of the root of each binding's component, or -1 while it's on the stack. */
+    private int[] component;
+
+    /** The bindings whose dependencies are being visited; replaces recursion. */
+    private int[] callStack;
+    private int callDepth;
+
+    /** Visited bindings whose components are not complete. */
+    private int[] componentStack;
+    private int componentSize;
+
+    private final StringBuilder cycles = new StringBuilder();
+
+    CycleFinder(int expectedSize) {
+      int capacity = Math.max(16, expectedSize);
+      edgeStart = new int[capacity];
+      edgeEnd = new int[capacity];
+      nextEdge = new int[capacity];
+      lowLink = new int[capacity];
+      component = new int[capacity];
+      callStack = new int[capacity];
+      componentStack = new int[capacity];
+    }
+
+    /** Returns a description of every cycle, or an empty string if there are none. */
+    String findCycles(Collection<Binding<?>> bindings) {
+      for (Binding<?> root : bindings) {
+        if (root == null || root.isCycleFree() || ids.containsKey(root)) {
+          continue;
+        }
+        visit(root);
+        while (callDepth > 0) {
+          int v = callStack[callDepth - 1];
+          if (nextEdge[v] < edgeEnd[v]) {
+            Binding<?> dependency = edges.get(nextEdge[v]++);
+            Integer w = ids.get(dependency);
+            if (w == null) {
+              visit(dependency);
+            } else if (component[w] == -1) {
+              lowLink[v] = Math.min(lowLink[v], w);
+            }
+          } else {
+            callDepth--;
+            if (lowLink[v] == v) {
+              completeComponent(v);
+            }
+            if (callDepth > 0) {
+              int caller = callStack[callDepth - 1];
+              lowLink[caller] = Math.min(lowLink[caller], lowLink[v]);
+            }
+          }
+        }
+      }
+      return cycles.toString();
+    }
+
+    /** Numbers {@code binding}, gets its dependencies and pushes it on both stacks. */
+    private void visit(Binding<?> binding) {
+      int v = nodes.size();
+      if (v == lowLink.length) {
+        grow();
+      }
+      nodes.add(binding);
+      ids.put(binding, v);
+      lowLink[v] = v;
+      component[v] = -1;
+      edgeStart[v] = edges.size();
+      binding.getDependencies(edgeCollector, edgeCollector);
+      edgeEnd[v] = edges.size();
+      nextEdge[v] = edgeStart[v];
+      componentStack[componentSize++] = v;
+      callStack[callDepth++] = v;
+    }
+
+    private void grow() {
+      int capacity = lowLink.length * 2;
+      edgeStart = Arrays.copyOf(edgeStart, capacity);
+      edgeEnd = Arrays.copyOf(edgeEnd, capacity);
+      nextEdge = Arrays.copyOf(nextEdge, capacity);
+      lowLink = Arrays.copyOf(lowLink, capacity);
+      component = Arrays.copyOf(component, capacity);
+      callStack = Arrays.copyOf(callStack, capacity);
+      componentStack = Arrays.copyOf(componentStack, capacity);
+    }
+
+    /**
+     * Pops the component rooted at {@code root}. It's a cycle if it has more
+     * than one binding, or if its only binding depends on itself. Otherwise its
+     * binding is marked cycle free if its dependencies are, so that later calls
+     * still find cycles reachable from it.
+     */
+    private void completeComponent(int root) {
+      int start = componentSize;
+      do {
+        start--;
+        component[componentStack[start]] = root;
+      } while (componentStack[start] != root);
+      int size = componentSize - start;
+      componentSize = start;
+
+      if (size != 1 || dependsOn(root, root)) {
+        appendCycle(root, size);
+      } else if (dependenciesAreCycleFree(root)) {
+        nodes.get(root).setCycleFree(true);
+      }
+    }
+
+    private boolean dependsOn(int v, int w) {
+      Binding<?> target = nodes.get(w);
+      for (int e = edgeStart[v]; e < edgeEnd[v]; e++) {
+        if (edges.get(e) == target) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private boolean dependenciesAreCycleFree(int v) {
+      for (int e = edgeStart[v]; e < edgeEnd[v]; e++) {
+        if (!edges.get(e).isCycleFree()) {
+          return false;
+        }
       }
+      return true;
+    }
+
+    /**
+     * Describes the shortest cycle through {@code root} in its component of
+     * {@code size} bindings. A breadth-first search from the root over
+     * dependencies in the component finds the binding that closes the cycle.
+     */
+    private void appendCycle(int root, int size) {
+      int[] queue = new int[size];
+      Map<Integer, Integer> parents = new HashMap<Integer, Integer>();
+      int head = 0;
+      int tail = 0;
+      queue[tail++] = root;
+      int last = -1;
+      search:
+      while (head < tail) {
+        int v = queue[head++];
+        for (int e = edgeStart[v]; e < edgeEnd[v]; e++) {
+          int w = ids.get(edges.get(e));
+          if (component[w] != root) {
+            continue;
+          }
+          if (w == root) {
+            last = v;
+            break search;
+          }
+          if (!parents.containsKey(w)) {
+            parents.put(w, v);
+            queue[tail++] = w;
+          }
+        }
+      }
+
+      List<Binding<?>> path = new ArrayList<Binding<?>>();
+      for (int v = last; v != root; v = parents.get(v)) {
+        path.add(nodes.get(v));
+      }
+      path.add(nodes.get(root));
+
+      if (cycles.length() != 0) {
+        cycles.append("\n");
+      }
+      cycles.append("Dependency cycle:");
+      for (int i = path.size() - 1; i >= 0; i--) {
+        Binding<?> binding = path.get(i);
+        cycles.append("\n    ").append(path.size() - 1 - i).append(". ")
+            .append(binding.provideKey).append(" bound by ").append(binding);
+      }
+      cycles.append("\n    0. ").append(nodes.get(root).provideKey);
     }
   }
 
-  static class ArraySet<T> extends AbstractSet<T> {
-    private ArrayList<T> list = new ArrayList<T>();
+  /**
+   * Appends dependencies to a list of edges, skipping those already known to
+   * be free of cycles. Implements {@code Set} for {@link
+   * Binding#getDependencies}, which adds each dependency once.
+   */
+  private static final class EdgeCollector extends AbstractSet<Binding<?>> {
+    private final List<Binding<?>> edges;
+
+    EdgeCollector(List<Binding<?>> edges) {
+      this.edges = edges;
+    }
 
-    @Override public boolean add(T t) {
-      list.add(t);
+    @Override public boolean add(Binding<?> binding) {
+      if (binding != null && !binding.isCycleFree()) {
+        edges.add(binding);
+      }
       return true;
     }
 
-    @Override public Iterator<T> iterator() {
-      return list.iterator();
+    @Override public Iterator<Binding<?>> iterator() {
+      throw new UnsupportedOperationException();
     }
 
     @Override public int size() {
@@ -19,6 +19,8 @@ package dagger.internal;
 import dagger.ObjectGraph;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -32,6 +34,22 @@ public final class RuntimeAggregatingPlugin implements Plugin {
   /** A list of {@code Linker.Plugin}s which will be consulted in-order to resolve requests. */
   private final Plugin[] plugins;
 
+  /**
+   * The index of the first plugin that resolved each class name, by operation.
+   * Later requests for the same name skip the plugins that failed, along with
+   * their exceptions. Failures of the last plugin aren't cached because they
+   * are reported to the caller. Plugins that resolve a name once are assumed
+   * to always resolve it, so this instance may be shared by object graphs.
+   */
+  private final ConcurrentMap<String, Integer> moduleAdapterPlugins
+      = new ConcurrentHashMap<String, Integer>();
+  private final ConcurrentMap<String, Integer> atInjectBindingPlugins
+      = new ConcurrentHashMap<String, Integer>();
+  private final ConcurrentMap<String, Integer> staticInjectionPlugins
+      = new ConcurrentHashMap<String, Integer>();
+  private final ConcurrentMap<String, Integer> graphAdapterPlugins
+      = new ConcurrentHashMap<String, Integer>();
+
   public RuntimeAggregatingPlugin(Plugin ... plugins) {
     if (plugins == null || plugins.length == 0) {
       throw new IllegalArgumentException("Must provide at least one plugin.");
@@ -93,14 +111,19 @@ public final class RuntimeAggregatingPlugin implements Plugin {
    * Obtains a module adapter for {@code module} from the first responding resolver.
    */
   @Override public <T> ModuleAdapter<T> getModuleAdapter(Class<? extends T> moduleClass, T module) {
-    for (int i = 0; i < plugins.length; i++) {
+    String name = moduleClass.getName();
+    int first = firstPlugin(moduleAdapterPlugins, name);
+    for (int i = first; i < plugins.length; i++) {
       try {
         ModuleAdapter<T> result = plugins[i].getModuleAdapter(moduleClass, module);
+        if (i != first) {
+          moduleAdapterPlugins.put(name, i);
+        }
         result.module = (module != null) ? module : result.newModule();
         return result;
       } catch (RuntimeException e) {
         if (i == plugins.length - 1) throw e;
-        logNotFound("Module adapter", moduleClass.getName(), e);
+        logNotFound("Module adapter", name, e);
       }
     }
     throw new AssertionError();
@@ -108,9 +131,14 @@ public final class RuntimeAggregatingPlugin implements Plugin {
 
   @Override public Binding<?> getAtInjectBinding(String key, String className,
       boolean mustBeInjectable) {
-    for (int i = 0; i < plugins.length; i++) {
+    int first = firstPlugin(atInjectBindingPlugins, className);
+    for (int i = first; i < plugins.length; i++) {
       try {
-        return plugins[i].getAtInjectBinding(key, className, mustBeInjectable);
+        Binding<?> result = plugins[i].getAtInjectBinding(key, className, mustBeInjectable);
+        if (i != first) {
+          atInjectBindingPlugins.put(className, i);
+        }
+        return result;
       } catch (RuntimeException e) {
         if (i == plugins.length - 1) throw e;
         logNotFound("Binding", className, e);
@@ -120,17 +148,51 @@ public final class RuntimeAggregatingPlugin implements Plugin {
   }
 
   @Override public StaticInjection getStaticInjection(Class<?> injectedClass) {
-    for (int i = 0; i < plugins.length; i++) {
+    String name = injectedClass.getName();
+    int first = firstPlugin(staticInjectionPlugins, name);
+    for (int i = first; i < plugins.length; i++) {
       try {
-        return plugins[i].getStaticInjection(injectedClass);
+        StaticInjection result = plugins[i].getStaticInjection(injectedClass);
+        if (i != first) {
+          staticInjectionPlugins.put(name, i);
+        }
+        return result;
       } catch (RuntimeException e) {
         if (i == plugins.length - 1) throw e;
-        logNotFound("Static injection", injectedClass.getName(), e);
+        logNotFound("Static injection", name, e);
       }
     }
     throw new AssertionError();
   }
 
+  /**
+   * Returns the graph adapter for {@code moduleClass} from the first responding
+   * resolver, or null if none of the resolvers has one.
+   */
+  @Override public <T> GraphAdapter<T> getGraphAdapter(Class<T> moduleClass) {
+    String name = moduleClass.getName();
+    int first = firstPlugin(graphAdapterPlugins, name);
+    for (int i = first; i < plugins.length; i++) {
+      try {
+        GraphAdapter<T> result = plugins[i].getGraphAdapter(moduleClass);
+        if (i != first) {
+          graphAdapterPlugins.put(name, i);
+        }
+        return result;
+      } catch (RuntimeException e) {
+        logNotFound("Graph adapter", name, e);
+      }
+    }
+    graphAdapterPlugins.put(name, plugins.length); // No plugin has one.
+    return null;
+  }
+
+  /** Returns the index of the first plugin to try for {@code name}. */
+  private static int firstPlugin(ConcurrentMap<String, Integer> resolvedBy, String name) {
+    Integer index = resolvedBy.get(name);
+    return (index != null) ? index : 0;
+  }
+
   private void logNotFound(String type, String name, RuntimeException e) {
     if (logger.isLoggable(Level.FINE)) {
       logger.log(Level.FINE, String.format("%s for %s not found.", type, name), e);
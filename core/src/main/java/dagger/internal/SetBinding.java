@@ -16,15 +16,18 @@
  */
 package dagger.internal;
 
-import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A {@code Binding<T>} which contains contributors (other bindings marked with
  * {@code @Provides} {@code @OneOf}), to which it delegates provision
  * requests on an as-needed basis.
+ *
+ * <p>If every contributor is a singleton, the set is built once and shared by
+ * all injections. Otherwise each provision builds a new set.
  */
 public final class SetBinding<T> extends Binding<Set<T>> {
 
@@ -40,23 +43,66 @@ public final class SetBinding<T> extends Binding<Set<T>> {
 
   private final Set<Binding<?>> contributors = new LinkedHashSet<Binding<?>>();
 
+  /** The contributors, copied when this binding is attached. */
+  private Binding<?>[] contributorArray;
+
+  /** True if every contributor always provides the same instance. */
+  private boolean allSingletons;
+
+  /** The shared set, or null if it hasn't been built or isn't shared. */
+  private volatile Set<T> sharedSet;
+
+  private final AtomicLong buildCount = new AtomicLong();
+
   public SetBinding(String key) {
     super(key, null, false, null);
   }
 
   @Override public void attach(Linker linker) {
+    boolean allSingletons = true;
     for (Binding<?> contributor : contributors) {
       contributor.attach(linker);
+      allSingletons &= contributor.isSingleton();
     }
+    this.contributorArray = contributors.toArray(new Binding<?>[contributors.size()]);
+    this.allSingletons = allSingletons;
   }
 
-  @SuppressWarnings("unchecked") // Bindings<T> are the only thing added to contributors.
   @Override public Set<T> get() {
-    Set<T> result = new LinkedHashSet<T>(contributors.size());
-    for (Binding<?> contributor : contributors) {
-      result.add((T) contributor.get()); // Let runtime exceptions through.
+    if (!allSingletons) {
+      return build();
     }
-    return Collections.unmodifiableSet(result);
+    // Double-checked locking. Read the volatile field once on the fast path.
+    Set<T> result = sharedSet;
+    if (result == null) {
+      synchronized (this) {
+        result = sharedSet;
+        if (result == null) {
+          sharedSet = result = build();
+        }
+      }
+    }
+    return result;
+  }
+
+  @SuppressWarnings("unchecked") // Bindings<T> are the only thing added to contributors.
+  private Set<T> build() {
+    buildCount.incrementAndGet();
+    Binding<?>[] contributorArray = this.contributorArray;
+    ArraySet<T> result = new ArraySet<T>(contributorArray.length);
+    for (Binding<?> contributor : contributorArray) {
+      result.addElement((T) Binding.provide(contributor)); // Let runtime exceptions through.
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of sets built by this binding. This is 1 after the
+   * first provision if every contributor is a singleton, and the number of
+   * provisions otherwise.
+   */
+  public long getBuildCount() {
+    return buildCount.get();
   }
 
   @Override public void getDependencies(
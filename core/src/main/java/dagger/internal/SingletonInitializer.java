@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the singletons of a linked graph eagerly. A singleton is created
+ * once the singletons it depends on have been created, so singletons that
+ * don't depend on each other are created concurrently.
+ *
+ * <p>Dependencies are found with {@link Binding#getDependencies}. Singletons
+ * reached through unscoped bindings are dependencies too, but those reached
+ * through a {@code Provider} or {@code Lazy} are not: they aren't needed to
+ * construct the singleton. Singletons on a dependency cycle are created last,
+ * on the calling thread.
+ */
+public final class SingletonInitializer {
+  private final Map<Binding<?>, Node> nodes = new IdentityHashMap<Binding<?>, Node>();
+
+  /** The singletons reachable from each unscoped binding, without passing through a singleton. */
+  private final Map<Binding<?>, Set<Node>> reachable
+      = new IdentityHashMap<Binding<?>, Set<Node>>();
+
+  /** Construction times in nanoseconds, by key, in the order the singletons were created. */
+  private final Map<String, Long> timings = new LinkedHashMap<String, Long>();
+
+  private Executor executor;
+  private int created;
+  private Throwable failure;
+
+  /**
+   * @param bindings linked bindings. Only the singletons among them are
+   *     created; other singletons, like those of a parent graph and the
+   *     singleton contributors of set and map bindings, are created on demand.
+   */
+  public SingletonInitializer(Collection<Binding<?>> bindings) {
+    for (Binding<?> binding : bindings) {
+      if (binding.isSingleton() && !nodes.containsKey(binding)) {
+        nodes.put(binding, new Node(binding));
+      }
+    }
+    for (Node node : nodes.values()) {
+      for (Node dependency : dependenciesOf(node.binding)) {
+        if (dependency != node) {
+          dependency.dependents.add(node);
+          node.pending.incrementAndGet();
+        }
+      }
+    }
+  }
+
+  /**
+   * Creates every singleton, using {@code executor} to create independent
+   * singletons concurrently. Returns when all singletons have been created.
+   *
+   * @return the time taken to create each singleton in nanoseconds, by key,
+   *     in the order the singletons were created.
+   * @throws RuntimeException the first exception thrown by a singleton's
+   *     constructor or provider method. Singletons already being created when
+   *     it was thrown may still complete on the executor.
+   */
+  public Map<String, Long> initialize(Executor executor) {
+    if (this.executor != null) throw new IllegalStateException("Already initialized");
+    this.executor = executor;
+
+    List<Node> ready = new ArrayList<Node>();
+    for (Node node : nodes.values()) {
+      if (node.pending.get() == 0) {
+        node.started = true;
+        ready.add(node);
+      }
+    }
+    int schedulable = countSchedulable(ready);
+    for (Node node : ready) {
+      if (!tryExecute(node)) {
+        node.run();
+      }
+    }
+
+    synchronized (this) {
+      try {
+        while (created < schedulable && failure == null) {
+          wait();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted while creating singletons", e);
+      }
+      rethrowFailure();
+    }
+
+    // Singletons on a cycle never became ready. Create them as get() would.
+    for (Node node : nodes.values()) {
+      if (!node.started) {
+        node.started = true;
+        node.create();
+        synchronized (this) {
+          rethrowFailure();
+        }
+      }
+    }
+
+    synchronized (this) {
+      return Collections.unmodifiableMap(new LinkedHashMap<String, Long>(timings));
+    }
+  }
+
+  /**
+   * Returns the number of nodes that will be created by the executor: those
+   * that are ready, plus those whose dependencies are all created by the
+   * executor. This excludes nodes on, or depending on, a cycle.
+   */
+  private int countSchedulable(List<Node> ready) {
+    Map<Node, Integer> pending = new IdentityHashMap<Node, Integer>();
+    List<Node> queue = new ArrayList<Node>(ready);
+    for (int i = 0; i < queue.size(); i++) {
+      for (Node dependent : queue.get(i).dependents) {
+        Integer count = pending.get(dependent);
+        int remaining = (count != null ? count : dependent.pending.get()) - 1;
+        pending.put(dependent, remaining);
+        if (remaining == 0) {
+          queue.add(dependent);
+        }
+      }
+    }
+    return queue.size();
+  }
+
+  /**
+   * Runs {@code node} on the executor. Returns false if the executor rejected
+   * it, in which case the caller must run it. Any other failure to execute is
+   * recorded like a construction failure, so {@link #initialize} doesn't wait
+   * for singletons that will never be created.
+   */
+  private boolean tryExecute(Node node) {
+    try {
+      executor.execute(node);
+      return true;
+    } catch (RejectedExecutionException e) {
+      return false;
+    } catch (Throwable e) {
+      synchronized (this) {
+        if (failure == null) {
+          failure = e;
+        }
+        notifyAll();
+      }
+      return true;
+    }
+  }
+
+  private void rethrowFailure() {
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    } else if (failure instanceof Error) {
+      throw (Error) failure;
+    } else if (failure != null) {
+      throw new RuntimeException(failure);
+    }
+  }
+
+  /** Returns the singletons {@code binding} depends on directly or through unscoped bindings. */
+  private Set<Node> dependenciesOf(Binding<?> binding) {
+    Set<Binding<?>> dependencies = new LinkedHashSet<Binding<?>>();
+    binding.getDependencies(dependencies, dependencies);
+    Set<Node> result = new LinkedHashSet<Node>();
+    for (Binding<?> dependency : dependencies) {
+      Node node = nodes.get(dependency);
+      if (node != null) {
+        result.add(node);
+      } else if (!dependency.isSingleton()) {
+        result.addAll(reachableFrom(dependency));
+      }
+    }
+    return result;
+  }
+
+  private Set<Node> reachableFrom(Binding<?> unscoped) {
+    Set<Node> result = reachable.get(unscoped);
+    if (result == null) {
+      // Guard against cycles of unscoped bindings, which would never terminate.
+      reachable.put(unscoped, Collections.<Node>emptySet());
+      result = dependenciesOf(unscoped);
+      reachable.put(unscoped, result);
+    }
+    return result;
+  }
+
+  private final class Node implements Runnable {
+    final Binding<?> binding;
+    final List<Node> dependents = new ArrayList<Node>();
+    final AtomicInteger pending = new AtomicInteger();
+    /** True once this node has been handed to a thread. Cycle nodes are never started. */
+    volatile boolean started;
+
+    Node(Binding<?> binding) {
+      this.binding = binding;
+    }
+
+    /**
+     * Creates this singleton and then its dependents that are now ready. One
+     * of those is created on this thread, so chains of singletons don't
+     * require a task each. Dependents that the executor rejects are also
+     * created on this thread.
+     */
+    @Override public void run() {
+      List<Node> local = new ArrayList<Node>();
+      local.add(this);
+      while (!local.isEmpty()) {
+        Node node = local.remove(local.size() - 1);
+        if (!node.create()) {
+          continue;
+        }
+        boolean keptOne = false;
+        for (Node dependent : node.dependents) {
+          if (dependent.pending.decrementAndGet() == 0) {
+            dependent.started = true;
+            if (!keptOne) {
+              keptOne = true;
+              local.add(dependent);
+            } else if (!tryExecute(dependent)) {
+              local.add(dependent);
+            }
+          }
+        }
+      }
+    }
+
+    /** Returns true if the singleton was created. */
+    boolean create() {
+      synchronized (SingletonInitializer.this) {
+        if (failure != null) {
+          return false;
+        }
+      }
+      try {
+        long start = System.nanoTime();
+        binding.get();
+        long elapsed = System.nanoTime() - start;
+        synchronized (SingletonInitializer.this) {
+          timings.put(binding.provideKey, elapsed);
+          created++;
+          SingletonInitializer.this.notifyAll();
+        }
+        return true;
+      } catch (Throwable e) {
+        synchronized (SingletonInitializer.this) {
+          if (failure == null) {
+            failure = e;
+          }
+          SingletonInitializer.this.notifyAll();
+        }
+        return false;
+      }
+    }
+  }
+}
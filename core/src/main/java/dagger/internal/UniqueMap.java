@@ -22,6 +22,14 @@ import java.util.Map;
  * A map that fails when existing values are clobbered.
  */
 public class UniqueMap<K, V> extends LinkedHashMap<K, V> {
+  public UniqueMap() {
+  }
+
+  /** Creates a map that holds {@code expectedSize} entries without growing. */
+  public UniqueMap(int expectedSize) {
+    super(Math.max(16, (int) (expectedSize / 0.75f) + 1));
+  }
+
   @Override public V put(K key, V value) {
     V clobbered = super.put(key, value);
     if (clobbered != null) {
@@ -16,6 +16,7 @@
 package dagger.internal.plugins.loading;
 
 import dagger.internal.Binding;
+import dagger.internal.GraphAdapter;
 import dagger.internal.ModuleAdapter;
 import dagger.internal.Plugin;
 import dagger.internal.StaticInjection;
@@ -28,6 +29,7 @@ public final class ClassloadingPlugin implements Plugin {
   public static final String INJECT_ADAPTER_SUFFIX = "$InjectAdapter";
   public static final String MODULE_ADAPTER_SUFFIX = "$ModuleAdapter";
   public static final String STATIC_INJECTION_SUFFIX = "$StaticInjection";
+  public static final String GRAPH_ADAPTER_SUFFIX = "$GraphAdapter";
 
   @Override public <T> ModuleAdapter<T> getModuleAdapter(Class<? extends T> moduleClass, T module) {
     return instantiate(moduleClass.getName(), MODULE_ADAPTER_SUFFIX);
@@ -42,6 +44,10 @@ public final class ClassloadingPlugin implements Plugin {
     return instantiate(injectedClass.getName(), STATIC_INJECTION_SUFFIX);
   }
 
+  @Override public <T> GraphAdapter<T> getGraphAdapter(Class<T> moduleClass) {
+    return instantiate(moduleClass.getName(), GRAPH_ADAPTER_SUFFIX);
+  }
+
   @SuppressWarnings("unchecked") // We use a naming convention to defend against mismatches.
   private <T> T instantiate(String className, String suffix) {
     String name = className + suffix;
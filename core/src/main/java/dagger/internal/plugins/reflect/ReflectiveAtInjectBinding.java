@@ -35,6 +35,24 @@ import javax.inject.Singleton;
  * using reflection.
  */
 final class ReflectiveAtInjectBinding<T> extends Binding<T> {
+  /** Arguments for no-arg constructors. Never modified, so it can be shared. */
+  private static final Object[] NO_ARGUMENTS = new Object[0];
+
+  /**
+   * The reflected injectable members of each class. These are immutable and
+   * shared by all bindings of the class, so only the first graph to inject a
+   * class pays for reflection. A template stays cached while a binding of its
+   * class is reachable.
+   */
+  private static final WeakCache<Class<?>, Template<?>> TEMPLATES
+      = new WeakCache<Class<?>, Template<?>>() {
+    @Override protected Template<?> create(Class<?> type) {
+      return Template.create(type);
+    }
+  };
+
+  /** Keeps the cached template reachable while this binding is. */
+  private final Template<T> template;
   private final Field[] fields;
   private final Constructor<T> constructor;
   private final Class<?> supertype;
@@ -43,24 +61,15 @@ final class ReflectiveAtInjectBinding<T> extends Binding<T> {
   private final Binding<?>[] parameterBindings;
   private Binding<? super T> supertypeBinding;
 
-  /**
-   * @param keys keys for the fields, constructor parameters and supertype in
-   *     that order. These are precomputed to minimize reflection when {@code
-   *     attach} is called multiple times.
-   * @param constructor the injectable constructor, or null if this binding
-   *     supports members injection only.
-   * @param supertype the injectable supertype, or null if the supertype is a
-   */
-  private ReflectiveAtInjectBinding(String provideKey, String membersKey, boolean singleton,
-      Class<?> type, Field[] fields, Constructor<T> constructor, int parameterCount,
-      Class<?> supertype, String[] keys) {
-    super(provideKey, membersKey, singleton, type);
-    this.constructor = constructor;
-    this.fields = fields;
-    this.supertype = supertype;
-    this.keys = keys;
-    this.parameterBindings = new Binding<?>[parameterCount];
-    this.fieldBindings = new Binding<?>[fields.length];
+  private ReflectiveAtInjectBinding(Template<T> template) {
+    super(template.provideKey, template.membersKey, template.singleton, template.type);
+    this.template = template;
+    this.constructor = template.constructor;
+    this.fields = template.fields;
+    this.supertype = template.supertype;
+    this.keys = template.keys;
+    this.parameterBindings = new Binding<?>[template.parameterCount];
+    this.fieldBindings = new Binding<?>[template.fields.length];
   }
 
   @SuppressWarnings("unchecked") // We're careful to make keys and bindings match up.
@@ -89,9 +98,12 @@ final class ReflectiveAtInjectBinding<T> extends Binding<T> {
     if (constructor == null) {
       throw new UnsupportedOperationException();
     }
-    Object[] args = new Object[parameterBindings.length];
-    for (int i = 0; i < parameterBindings.length; i++) {
-      args[i] = parameterBindings[i].get();
+    Object[] args = NO_ARGUMENTS;
+    if (parameterBindings.length != 0) {
+      args = new Object[parameterBindings.length];
+      for (int i = 0; i < parameterBindings.length; i++) {
+        args[i] = Binding.provide(parameterBindings[i]);
+      }
     }
     T result;
     try {
@@ -113,7 +125,7 @@ final class ReflectiveAtInjectBinding<T> extends Binding<T> {
   @Override public void injectMembers(T t) {
     try {
       for (int i = 0; i < fields.length; i++) {
-        fields[i].set(t, fieldBindings[i].get());
+        fields[i].set(t, Binding.provide(fieldBindings[i]));
       }
       if (supertypeBinding != null) {
         supertypeBinding.injectMembers(t);
@@ -124,10 +136,8 @@ final class ReflectiveAtInjectBinding<T> extends Binding<T> {
   }
 
   @Override public void getDependencies(Set<Binding<?>> get, Set<Binding<?>> injectMembers) {
-    if (parameterBindings != null) {
-      for (Binding<?> binding : parameterBindings) {
-        get.add(binding);
-      }
+    for (Binding<?> binding : parameterBindings) {
+      get.add(binding);
     }
     for (Binding<?> binding : fieldBindings) {
       injectMembers.add(binding);
@@ -145,82 +155,134 @@ final class ReflectiveAtInjectBinding<T> extends Binding<T> {
    * @param mustBeInjectable true if the binding must have {@code @Inject}
    *     annotations.
    */
+  @SuppressWarnings("unchecked") // The template was created for 'type'.
   public static <T> Binding<T> create(Class<T> type, boolean mustBeInjectable) {
-    boolean singleton = type.isAnnotationPresent(Singleton.class);
-    List<String> keys = new ArrayList<String>();
-
-    // Lookup the injectable fields and their corresponding keys.
-    List<Field> injectedFields = new ArrayList<Field>();
-    for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
-      for (Field field : c.getDeclaredFields()) {
-        if (!field.isAnnotationPresent(Inject.class) || Modifier.isStatic(field.getModifiers())) {
-          continue;
-        }
-        field.setAccessible(true);
-        injectedFields.add(field);
-        keys.add(Keys.get(field.getGenericType(), field.getAnnotations(), field));
-      }
+    Template<T> template = (Template<T>) TEMPLATES.get(type);
+    if (!template.hasInjections && mustBeInjectable) {
+      throw new IllegalArgumentException("No injectable members on " + type.getName()
+          + ". Do you want to add an injectable constructor?");
     }
+    if (template.constructor == null && template.singleton) {
+      throw new IllegalArgumentException(
+          "No injectable constructor on @Singleton " + type.getName());
+    }
+    return template.newBinding();
+  }
 
-    // Look up @Inject-annotated constructors. If there's no @Inject-annotated
-    // constructor, use a default public constructor if the class has other
-    // injections. Otherwise treat the class as non-injectable.
-    Constructor<T> injectedConstructor = null;
-    for (Constructor<T> constructor : getConstructorsForType(type)) {
-      if (!constructor.isAnnotationPresent(Inject.class)) {
-        continue;
-      }
-      if (injectedConstructor != null) {
-        throw new IllegalArgumentException("Too many injectable constructors on " + type.getName());
-      }
-      injectedConstructor = constructor;
+  /**
+   * The immutable, reflected structure of an injectable class. Creating a
+   * binding from a template doesn't use reflection.
+   */
+  private static final class Template<T> {
+    final String provideKey;
+    final String membersKey;
+    final boolean singleton;
+    final Class<T> type;
+    final Field[] fields;
+    /** The injectable constructor, or null if only members injection is supported. */
+    final Constructor<T> constructor;
+    final int parameterCount;
+    /** The injectable supertype, or null if the supertype is a platform type. */
+    final Class<?> supertype;
+    /**
+     * Keys for the fields, constructor parameters and supertype in that order.
+     * These are precomputed to minimize reflection when {@code attach} is
+     * called multiple times.
+     */
+    final String[] keys;
+    /** True if the class has an {@code @Inject} constructor or fields. */
+    final boolean hasInjections;
+
+    Template(String provideKey, String membersKey, boolean singleton, Class<T> type,
+        Field[] fields, Constructor<T> constructor, int parameterCount, Class<?> supertype,
+        String[] keys, boolean hasInjections) {
+      this.provideKey = provideKey;
+      this.membersKey = membersKey;
+      this.singleton = singleton;
+      this.type = type;
+      this.fields = fields;
+      this.constructor = constructor;
+      this.parameterCount = parameterCount;
+      this.supertype = supertype;
+      this.keys = keys;
+      this.hasInjections = hasInjections;
     }
-    if (injectedConstructor == null) {
-      if (injectedFields.isEmpty() && mustBeInjectable) {
-        throw new IllegalArgumentException("No injectable members on " + type.getName()
-            + ". Do you want to add an injectable constructor?");
-      }
-      try {
-        injectedConstructor = type.getDeclaredConstructor();
-      } catch (NoSuchMethodException ignored) {
-      }
+
+    Binding<T> newBinding() {
+      return new ReflectiveAtInjectBinding<T>(this);
     }
 
-    int parameterCount;
-    String provideKey;
-    if (injectedConstructor != null) {
-      provideKey = Keys.get(type);
-      injectedConstructor.setAccessible(true);
-      Type[] types = injectedConstructor.getGenericParameterTypes();
-      parameterCount = types.length;
-      if (parameterCount != 0) {
-        Annotation[][] annotations = injectedConstructor.getParameterAnnotations();
-        for (int p = 0; p < types.length; p++) {
-          keys.add(Keys.get(types[p], annotations[p], injectedConstructor));
+    static <T> Template<T> create(Class<T> type) {
+      boolean singleton = type.isAnnotationPresent(Singleton.class);
+      List<String> keys = new ArrayList<String>();
+
+      // Lookup the injectable fields and their corresponding keys.
+      List<Field> injectedFields = new ArrayList<Field>();
+      for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+        for (Field field : c.getDeclaredFields()) {
+          if (!field.isAnnotationPresent(Inject.class) || Modifier.isStatic(field.getModifiers())) {
+            continue;
+          }
+          field.setAccessible(true);
+          injectedFields.add(field);
+          keys.add(Keys.get(field.getGenericType(), field.getAnnotations(), field));
         }
       }
-    } else {
-      provideKey = null;
-      parameterCount = 0;
-      if (singleton) {
-        throw new IllegalArgumentException(
-            "No injectable constructor on @Singleton " + type.getName());
+
+      // Look up @Inject-annotated constructors. If there's no @Inject-annotated
+      // constructor, use a default public constructor if the class has other
+      // injections. Otherwise treat the class as non-injectable.
+      Constructor<T> injectedConstructor = null;
+      for (Constructor<T> constructor : getConstructorsForType(type)) {
+        if (!constructor.isAnnotationPresent(Inject.class)) {
+          continue;
+        }
+        if (injectedConstructor != null) {
+          throw new IllegalArgumentException(
+              "Too many injectable constructors on " + type.getName());
+        }
+        injectedConstructor = constructor;
+      }
+      boolean hasInjections = injectedConstructor != null || !injectedFields.isEmpty();
+      if (injectedConstructor == null) {
+        try {
+          injectedConstructor = type.getDeclaredConstructor();
+        } catch (NoSuchMethodException ignored) {
+        }
       }
-    }
 
-    Class<? super T> supertype = type.getSuperclass();
-    if (supertype != null) {
-      if (Keys.isPlatformType(supertype.getName())) {
-        supertype = null;
+      int parameterCount;
+      String provideKey;
+      if (injectedConstructor != null) {
+        provideKey = Keys.get(type);
+        injectedConstructor.setAccessible(true);
+        Type[] types = injectedConstructor.getGenericParameterTypes();
+        parameterCount = types.length;
+        if (parameterCount != 0) {
+          Annotation[][] annotations = injectedConstructor.getParameterAnnotations();
+          for (int p = 0; p < types.length; p++) {
+            keys.add(Keys.get(types[p], annotations[p], injectedConstructor));
+          }
+        }
       } else {
-        keys.add(Keys.getMembersKey(supertype));
+        provideKey = null;
+        parameterCount = 0;
       }
-    }
 
-    String membersKey = Keys.getMembersKey(type);
-    return new ReflectiveAtInjectBinding<T>(provideKey, membersKey, singleton, type,
-        injectedFields.toArray(new Field[injectedFields.size()]), injectedConstructor,
-        parameterCount, supertype, keys.toArray(new String[keys.size()]));
+      Class<? super T> supertype = type.getSuperclass();
+      if (supertype != null) {
+        if (Keys.isPlatformType(supertype.getName())) {
+          supertype = null;
+        } else {
+          keys.add(Keys.getMembersKey(supertype));
+        }
+      }
+
+      String membersKey = Keys.getMembersKey(type);
+      return new Template<T>(provideKey, membersKey, singleton, type,
+          injectedFields.toArray(new Field[injectedFields.size()]), injectedConstructor,
+          parameterCount, supertype, keys.toArray(new String[keys.size()]), hasInjections);
+    }
   }
 
   @SuppressWarnings("unchecked") // Class.getDeclaredConstructors is an unsafe API.
@@ -15,11 +15,13 @@
  */
 package dagger.internal.plugins.reflect;
 
+import dagger.MapKey;
 import dagger.Module;
 import dagger.Provides;
 import dagger.internal.Binding;
 import dagger.internal.Keys;
 import dagger.internal.Linker;
+import dagger.internal.MapBinding;
 import dagger.internal.ModuleAdapter;
 import dagger.internal.SetBinding;
 import java.lang.annotation.Annotation;
@@ -27,21 +29,46 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import javax.inject.Singleton;
 
 final class ReflectiveModuleAdapter extends ModuleAdapter<Object> {
+  /** Arguments for provider methods without parameters. Never modified. */
+  private static final Object[] NO_ARGUMENTS = new Object[0];
+
+  /**
+   * The reflected {@code @Module} annotation and {@code @Provides} methods of
+   * each module class. These are immutable and shared by all adapters of the
+   * class, so only the first graph to use a module pays for reflection. A
+   * template stays cached while a graph's bindings still refer to it.
+   */
+  private static final WeakCache<Class<?>, ModuleTemplate> TEMPLATES
+      = new WeakCache<Class<?>, ModuleTemplate>() {
+    @Override protected ModuleTemplate create(Class<?> moduleClass) {
+      return new ModuleTemplate(moduleClass);
+    }
+  };
+
   final Class<?> moduleClass;
+  private final ProviderMethod[] providerMethods;
 
-  public ReflectiveModuleAdapter(Class<?> moduleClass, Module annotation) {
+  private ReflectiveModuleAdapter(Class<?> moduleClass, ModuleTemplate template) {
     super(
-        toMemberKeys(annotation.entryPoints()),
-        annotation.staticInjections(),
-        annotation.overrides(),
-        annotation.includes(),
-        annotation.complete());
+        template.entryPoints,
+        template.staticInjections,
+        template.overrides,
+        template.includes,
+        template.complete);
     this.moduleClass = moduleClass;
+    this.providerMethods = template.providerMethods;
+  }
+
+  /** Returns a new adapter for {@code moduleClass}, which must be annotated {@code @Module}. */
+  public static ReflectiveModuleAdapter create(Class<?> moduleClass) {
+    return new ReflectiveModuleAdapter(moduleClass, TEMPLATES.get(moduleClass));
   }
 
   private static String[] toMemberKeys(Class<?>[] entryPoints) {
@@ -53,34 +80,28 @@ final class ReflectiveModuleAdapter extends ModuleAdapter<Object> {
   }
 
   @Override public void getBindings(Map<String, Binding<?>> bindings) {
-    for (Class<?> c = moduleClass; c != Object.class; c = c.getSuperclass()) {
-      for (Method method : c.getDeclaredMethods()) {
-        Provides provides = method.getAnnotation(Provides.class);
-        if (provides != null) {
-          String key = Keys.get(method.getGenericReturnType(), method.getAnnotations(), method);
-          switch (provides.type()) {
-            case UNIQUE:
-              handleBindings(bindings, method, key);
-              break;
-            case SET:
-              handleSetBindings(bindings, method, key);
-              break;
-            default:
-              throw new AssertionError("Unknown @Provides type " + provides.type());
-          }
-        }
+    for (ProviderMethod providerMethod : providerMethods) {
+      if (providerMethod.elementKey == null) {
+        handleBindings(bindings, providerMethod);
+      } else if (providerMethod.entryKey == null) {
+        handleSetBindings(bindings, providerMethod);
+      } else {
+        handleMapBindings(bindings, providerMethod);
       }
     }
   }
 
-  private <T> void handleBindings(Map<String, Binding<?>> bindings, Method method, String key) {
-    bindings.put(key, new ProviderMethodBinding<T>(method, key, module));
+  private <T> void handleBindings(Map<String, Binding<?>> bindings, ProviderMethod method) {
+    bindings.put(method.key, new ProviderMethodBinding<T>(method, module));
+  }
+
+  private <T> void handleSetBindings(Map<String, Binding<?>> bindings, ProviderMethod method) {
+    SetBinding.<T>add(bindings, method.elementKey, new ProviderMethodBinding<T>(method, module));
   }
 
-  private <T> void handleSetBindings(Map<String, Binding<?>> bindings, Method method, String key) {
-    String elementKey =
-        Keys.getElementKey(method.getGenericReturnType(), method.getAnnotations(), method);
-    SetBinding.<T>add(bindings, elementKey, new ProviderMethodBinding<T>(method, key, module));
+  private <T> void handleMapBindings(Map<String, Binding<?>> bindings, ProviderMethod method) {
+    MapBinding.<T>add(bindings, method.elementKey, method.entryKey,
+        new ProviderMethodBinding<T>(method, module));
   }
 
   @Override protected Object newModule() {
@@ -99,36 +120,139 @@ final class ReflectiveModuleAdapter extends ModuleAdapter<Object> {
     }
   }
 
+  /** The immutable, reflected structure of a module class. */
+  private static final class ModuleTemplate {
+    final String[] entryPoints;
+    final Class<?>[] staticInjections;
+    final boolean overrides;
+    final Class<?>[] includes;
+    final boolean complete;
+    final ProviderMethod[] providerMethods;
+
+    ModuleTemplate(Class<?> moduleClass) {
+      Module annotation = moduleClass.getAnnotation(Module.class);
+      if (annotation == null) {
+        throw new IllegalArgumentException("No @Module on " + moduleClass.getName());
+      }
+      this.entryPoints = toMemberKeys(annotation.entryPoints());
+      this.staticInjections = annotation.staticInjections();
+      this.overrides = annotation.overrides();
+      this.includes = annotation.includes();
+      this.complete = annotation.complete();
+
+      List<ProviderMethod> methods = new ArrayList<ProviderMethod>();
+      for (Class<?> c = moduleClass; c != Object.class; c = c.getSuperclass()) {
+        for (Method method : c.getDeclaredMethods()) {
+          Provides provides = method.getAnnotation(Provides.class);
+          if (provides != null) {
+            methods.add(new ProviderMethod(this, method, provides.type()));
+          }
+        }
+      }
+      this.providerMethods = methods.toArray(new ProviderMethod[methods.size()]);
+    }
+  }
+
+  /** The immutable, reflected structure of a {@code @Provides} method. */
+  private static final class ProviderMethod {
+    /** Keeps the cached template reachable while this method's bindings are. */
+    final ModuleTemplate template;
+    final Method method;
+    final String key;
+    /** The key of the set or map that this method contributes to, or null if it's unique. */
+    final String elementKey;
+    /** The {@code @MapKey} of this method's value, or null if it isn't a map binding. */
+    final String entryKey;
+    final boolean singleton;
+    /** Computed on first attach, so that key errors are reported when linking. */
+    private volatile String[] parameterKeys;
+
+    ProviderMethod(ModuleTemplate template, Method method, Provides.Type type) {
+      this.template = template;
+      this.method = method;
+      this.key = Keys.get(method.getGenericReturnType(), method.getAnnotations(), method);
+      switch (type) {
+        case UNIQUE:
+          this.elementKey = null;
+          this.entryKey = null;
+          break;
+        case SET:
+          this.elementKey =
+              Keys.getElementKey(method.getGenericReturnType(), method.getAnnotations(), method);
+          this.entryKey = null;
+          break;
+        case MAP:
+          MapKey mapKey = method.getAnnotation(MapKey.class);
+          if (mapKey == null) {
+            throw new IllegalArgumentException("No @MapKey on " + method);
+          }
+          this.elementKey =
+              Keys.getMapKey(method.getGenericReturnType(), method.getAnnotations(), method);
+          this.entryKey = mapKey.value();
+          break;
+        default:
+          throw new AssertionError("Unknown @Provides type " + type);
+      }
+      this.singleton = method.isAnnotationPresent(Singleton.class);
+      method.setAccessible(true);
+    }
+
+    String[] parameterKeys() {
+      String[] result = parameterKeys;
+      if (result == null) {
+        Type[] types = method.getGenericParameterTypes();
+        Annotation[][] annotations = method.getParameterAnnotations();
+        result = new String[types.length];
+        for (int i = 0; i < result.length; i++) {
+          result[i] = Keys.get(types[i], annotations[i], method + " parameter " + i);
+        }
+        parameterKeys = result;
+      }
+      return result;
+    }
+  }
+
   /**
    * Invokes a method to provide a value. The method's parameters are injected.
    */
-  private final class ProviderMethodBinding<T> extends Binding<T> {
-    private Binding<?>[] parameters;
+  private static final class ProviderMethodBinding<T> extends Binding<T> {
     private final Method method;
+    private final ProviderMethod providerMethod;
     private final Object instance;
+    private Binding<?>[] parameters;
 
-    public ProviderMethodBinding(Method method, String key, Object instance) {
-      super(key, null, method.isAnnotationPresent(Singleton.class), method);
-      this.method = method;
+    public ProviderMethodBinding(ProviderMethod providerMethod, Object instance) {
+      super(providerMethod.key, null, providerMethod.singleton, providerMethod.method);
+      this.method = providerMethod.method;
+      this.providerMethod = providerMethod;
       this.instance = instance;
-      method.setAccessible(true);
     }
 
+    /**
+     * Requests the bindings for the method's parameters. Bindings found by an
+     * earlier call are not requested again if the linker calls this multiple
+     * times.
+     */
     @Override public void attach(Linker linker) {
-      Type[] types = method.getGenericParameterTypes();
-      Annotation[][] annotations = method.getParameterAnnotations();
-      parameters = new Binding[types.length];
+      String[] parameterKeys = providerMethod.parameterKeys();
+      if (parameters == null) {
+        parameters = new Binding<?>[parameterKeys.length];
+      }
       for (int i = 0; i < parameters.length; i++) {
-        String key = Keys.get(types[i], annotations[i], method + " parameter " + i);
-        parameters[i] = linker.requestBinding(key, method);
+        if (parameters[i] == null) {
+          parameters[i] = linker.requestBinding(parameterKeys[i], method);
+        }
       }
     }
 
     @SuppressWarnings("unchecked") // We defined 'T' in terms of the method's return type.
     @Override public T get() {
-      Object[] args = new Object[parameters.length];
-      for (int i = 0; i < parameters.length; i++) {
-        args[i] = parameters[i].get();
+      Object[] args = NO_ARGUMENTS;
+      if (parameters.length != 0) {
+        args = new Object[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+          args[i] = Binding.provide(parameters[i]);
+        }
       }
       try {
         return (T) method.invoke(instance, args);
@@ -15,8 +15,8 @@
  */
 package dagger.internal.plugins.reflect;
 
-import dagger.Module;
 import dagger.internal.Binding;
+import dagger.internal.GraphAdapter;
 import dagger.internal.ModuleAdapter;
 import dagger.internal.Plugin;
 import dagger.internal.StaticInjection;
@@ -48,11 +48,7 @@ public final class ReflectivePlugin implements Plugin {
 
   @SuppressWarnings("unchecked") // Runtime checks validate that the result type matches 'T'.
   @Override public <T> ModuleAdapter<T> getModuleAdapter(Class<? extends T> moduleClass, T module) {
-    Module annotation = moduleClass.getAnnotation(Module.class);
-    if (annotation == null) {
-      throw new IllegalArgumentException("No @Module on " + moduleClass.getName());
-    }
-    return (ModuleAdapter<T>) new ReflectiveModuleAdapter(moduleClass, annotation);
+    return (ModuleAdapter<T>) ReflectiveModuleAdapter.create(moduleClass);
   }
 
   @Override public StaticInjection getStaticInjection(Class<?> injectedClass) {
@@ -68,4 +64,8 @@ public final class ReflectivePlugin implements Plugin {
     }
     return new ReflectiveStaticInjection(fields.toArray(new Field[fields.size()]));
   }
-}
\ No newline at end of file
+
+  @Override public <T> GraphAdapter<T> getGraphAdapter(Class<T> moduleClass) {
+    throw new UnsupportedOperationException("Graph adapters are only generated at build time.");
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2012 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal.plugins.reflect;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A cache of values computed from classes that doesn't prevent those classes
+ * from being unloaded. Both keys and values are weakly referenced: values
+ * usually refer to their key's members, which would otherwise keep the key
+ * reachable. Callers must keep values reachable for as long as they're needed.
+ */
+abstract class WeakCache<K, V> {
+  private final Map<K, WeakReference<V>> map = new WeakHashMap<K, WeakReference<V>>();
+
+  /**
+   * Returns the value for {@code key}, creating it if necessary. Values are
+   * created without holding the lock, so concurrent callers may race to
+   * create the same value; the first value stored wins.
+   */
+  final V get(K key) {
+    synchronized (this) {
+      WeakReference<V> reference = map.get(key);
+      V value = reference != null ? reference.get() : null;
+      if (value != null) {
+        return value;
+      }
+    }
+
+    V created = create(key);
+
+    synchronized (this) {
+      WeakReference<V> reference = map.get(key);
+      V value = reference != null ? reference.get() : null;
+      if (value != null) {
+        return value;
+      }
+      map.put(key, new WeakReference<V>(created));
+      return created;
+    }
+  }
+
+  protected abstract V create(K key);
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2012 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import java.util.Map;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public final class BindingMetricsTest {
+  static class Engine {
+    @Inject Engine() {
+    }
+  }
+
+  @Singleton
+  static class Garage {
+    @Inject Garage() {
+    }
+  }
+
+  static class Car {
+    @Inject Engine engine;
+    @Inject Garage garage;
+  }
+
+  @Module(entryPoints = { Car.class, Engine.class })
+  static class TestModule {
+  }
+
+  @Test public void callsAreCounted() {
+    BindingMetrics metrics = new BindingMetrics();
+    ObjectGraph graph = ObjectGraph.createInstrumented(metrics, new TestModule());
+    graph.get(Engine.class);
+    graph.inject(new Car());
+    graph.inject(new Car());
+
+    Map<String, BindingMetrics.Stats> snapshot = metrics.snapshot();
+    BindingMetrics.Stats engine = snapshot.get(Engine.class.getName());
+    assertThat(engine.getProvisions()).isEqualTo(3L);
+    assertThat(engine.getInjections()).isEqualTo(0L);
+    assertThat(engine.getP99Nanos()).isLessThanOrEqualTo(engine.getMaxNanos());
+    assertThat(engine.getTotalNanos()).isGreaterThanOrEqualTo(engine.getMaxNanos());
+
+    BindingMetrics.Stats car = snapshot.get(Car.class.getName());
+    assertThat(car.getInjections()).isEqualTo(2L);
+    assertThat(snapshot.get(Garage.class.getName()).getProvisions()).isEqualTo(2L);
+  }
+
+  @Test public void plusGraphsRecordToTheSameMetrics() {
+    @Module(addsTo = TestModule.class, entryPoints = Garage.class)
+    class PlusModule {
+    }
+
+    BindingMetrics metrics = new BindingMetrics();
+    ObjectGraph graph = ObjectGraph.createInstrumented(metrics, new TestModule())
+        .plus(new PlusModule());
+    graph.get(Garage.class);
+
+    assertThat(metrics.snapshot().get(Garage.class.getName()).getProvisions()).isEqualTo(1L);
+  }
+
+  @Test public void resetDiscardsMetrics() {
+    BindingMetrics metrics = new BindingMetrics();
+    ObjectGraph graph = ObjectGraph.createInstrumented(metrics, new TestModule());
+    graph.get(Engine.class);
+    metrics.reset();
+
+    BindingMetrics.Stats engine = metrics.snapshot().get(Engine.class.getName());
+    assertThat(engine.getProvisions()).isEqualTo(0L);
+    assertThat(engine.getP50Nanos()).isEqualTo(0L);
+  }
+
+  @Test public void uninstrumentedGraphsRecordNothing() {
+    BindingMetrics metrics = new BindingMetrics();
+    ObjectGraph.createInstrumented(metrics, new TestModule());
+    ObjectGraph.create(new TestModule()).get(Engine.class);
+    assertThat(metrics.snapshot().isEmpty()).isTrue();
+  }
+}
@@ -98,6 +98,58 @@ public final class ExtensionTest {
     assertThat(request1.get(C.class).a).isSameAs(request2.get(C.class).a);
   }
 
+  static class Request {
+    @Inject String path;
+    @Inject B b;
+  }
+
+  @Module(addsTo = RootModule.class, entryPoints = Request.class, includes = PathModule.class)
+  static class RequestModule { }
+
+  @Module(complete = false)
+  static class PathModule {
+    final String path;
+
+    PathModule(String path) {
+      this.path = path;
+    }
+
+    PathModule() {
+      this("/default");
+    }
+
+    @Provides String providePath() {
+      return path;
+    }
+  }
+
+  @Test public void repeatedExtensionsUseTheirOwnModules() {
+    ObjectGraph app = ObjectGraph.create(new RootModule());
+    ObjectGraph request1 = app.plus(new RequestModule(), new PathModule("/one"));
+    ObjectGraph request2 = app.plus(new RequestModule(), new PathModule("/two"));
+    ObjectGraph request3 = app.plus(RequestModule.class);
+
+    assertThat(request1.get(Request.class).path).isEqualTo("/one");
+    assertThat(request2.get(Request.class).path).isEqualTo("/two");
+    assertThat(request3.get(Request.class).path).isEqualTo("/default");
+    assertThat(request2.get(Request.class).b.a).isSameAs(app.get(A.class));
+  }
+
+  @Module(entryPoints = Request.class, complete = false)
+  static class EmptyScopeModule { }
+
+  @Test public void deeplyNestedGraphsSeeAncestorEntryPoints() {
+    ObjectGraph app = ObjectGraph.create(new RootModule());
+    ObjectGraph graph = app.plus(new ExtensionModule(), new PathModule("/nested"));
+    for (int i = 0; i < 5; i++) {
+      graph = graph.plus(new EmptyScopeModule());
+    }
+    assertThat(graph.get(A.class)).isSameAs(app.get(A.class));
+    assertThat(graph.get(C.class)).isNotNull();
+    assertThat(graph.get(Request.class).path).isEqualTo("/nested");
+    assertFailNoEntryPoint(app, Request.class);
+  }
+
   private void assertFailNoEntryPoint(ObjectGraph graph, Class<?> clazz) {
     try {
       assertThat(graph.get(clazz)).isNull();
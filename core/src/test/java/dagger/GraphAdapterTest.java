@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2012 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import dagger.internal.Binding;
+import dagger.internal.Keys;
+import dagger.internal.ModuleAdapter;
+import java.util.List;
+import java.util.Map;
+import javax.inject.Inject;
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public final class GraphAdapterTest {
+  static final Greeting JIT_GREETING = new Greeting("jit");
+
+  static class Greeting {
+    final String message;
+
+    @Inject Greeting() {
+      this("reflective");
+    }
+
+    Greeting(String message) {
+      this.message = message;
+    }
+  }
+
+  static class Greeter {
+    @Inject Greeting greeting;
+    @Inject String name;
+  }
+
+  @Module(entryPoints = Greeter.class, includes = IncludedModule.class)
+  public static class RootModule {
+    /** Loaded by name in place of a generated graph adapter. */
+    public static class GraphAdapter extends dagger.internal.GraphAdapter<RootModule> {
+      @Override protected void getModuleAdapters(Map<Class<?>, ModuleAdapter<?>> map) {
+        map.put(RootModule.class, null);
+        map.put(IncludedModule.class, null);
+      }
+
+      @Override public void getJitBindings(List<Binding<?>> bindings) {
+        bindings.add(new Binding<Greeting>(Keys.get(Greeting.class), null, false, "test") {
+          @Override public Greeting get() {
+            return JIT_GREETING;
+          }
+        });
+      }
+
+      @Override public int getBindingCount() {
+        return 3;
+      }
+    }
+  }
+
+  @Module
+  static class IncludedModule {
+    @Provides String provideName() {
+      return "included";
+    }
+  }
+
+  @Test public void graphAdapterCreatesGraph() {
+    Greeter greeter = ObjectGraph.create(new RootModule()).get(Greeter.class);
+    assertThat(greeter.greeting).isSameAs(JIT_GREETING);
+    assertThat(greeter.name).isEqualTo("included");
+  }
+
+  @Test public void graphAdapterCreatesGraphForModuleClass() {
+    Greeter greeter = ObjectGraph.create(RootModule.class).get(Greeter.class);
+    assertThat(greeter.greeting).isSameAs(JIT_GREETING);
+  }
+
+  @Test public void graphAdapterIsNotUsedForMultipleModules() {
+    @Module
+    class OtherModule {
+    }
+
+    Greeter greeter = ObjectGraph.create(new RootModule(), new OtherModule()).get(Greeter.class);
+    assertThat(greeter.greeting.message).isEqualTo("reflective");
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2012 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class InitializeSingletonsTest {
+  static final List<String> created = Collections.synchronizedList(new ArrayList<String>());
+
+  private ExecutorService executor;
+
+  @Before public void setUp() {
+    created.clear();
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @After public void tearDown() {
+    executor.shutdown();
+  }
+
+  @Singleton
+  static class Database {
+    @Inject Database() {
+      created.add("Database");
+    }
+  }
+
+  @Singleton
+  static class Cache {
+    @Inject Cache() {
+      created.add("Cache");
+    }
+  }
+
+  static class Repository {
+    @Inject Repository(Database database, Cache cache) {
+    }
+  }
+
+  @Singleton
+  static class Server {
+    @Inject Repository repository;
+    @Inject Provider<Listener> listener;
+
+    @Inject Server() {
+      created.add("Server");
+    }
+  }
+
+  @Singleton
+  static class Listener {
+    @Inject Server server;
+
+    @Inject Listener() {
+      created.add("Listener");
+    }
+  }
+
+  @Test public void singletonsAreCreatedAfterTheirDependencies() {
+    @Module(entryPoints = { Server.class, Listener.class })
+    class TestModule {
+    }
+
+    ObjectGraph graph = ObjectGraph.create(new TestModule());
+    Map<String, Long> timings = graph.initializeSingletons(executor);
+
+    assertThat(created).hasSize(4);
+    assertThat(created.indexOf("Server")).isGreaterThan(created.indexOf("Database"));
+    assertThat(created.indexOf("Server")).isGreaterThan(created.indexOf("Cache"));
+    assertThat(created.indexOf("Listener")).isGreaterThan(created.indexOf("Server"));
+    assertThat(timings).hasSize(4);
+    for (Long nanos : timings.values()) {
+      assertThat(nanos).isGreaterThanOrEqualTo(0);
+    }
+
+    Listener listener = graph.get(Listener.class);
+    assertThat(listener.server).isSameAs(graph.get(Server.class));
+    assertThat(created).hasSize(4);
+  }
+
+  @Test public void providesMethodSingletonsAreCreated() {
+    @Module(entryPoints = Server.class)
+    class TestModule {
+      @Provides @Singleton String provideName(Database database) {
+        created.add("name");
+        return "server";
+      }
+    }
+
+    ObjectGraph graph = ObjectGraph.create(new TestModule());
+    Map<String, Long> timings = graph.initializeSingletons(executor);
+
+    assertThat(created).contains("name");
+    assertThat(created.indexOf("name")).isGreaterThan(created.indexOf("Database"));
+    assertThat(timings.containsKey("java.lang.String")).isTrue();
+  }
+
+  @Singleton
+  static class Broken {
+    @Inject Broken() {
+      throw new UnsupportedOperationException("Broken!");
+    }
+  }
+
+  @Test public void constructionFailureIsRethrown() {
+    @Module(entryPoints = Broken.class)
+    class TestModule {
+    }
+
+    ObjectGraph graph = ObjectGraph.create(new TestModule());
+    try {
+      graph.initializeSingletons(executor);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+      assertThat(expected.getMessage()).isEqualTo("Broken!");
+    }
+  }
+
+  @Singleton
+  static class Hub {
+    @Inject Hub() {
+      created.add("Hub");
+    }
+  }
+
+  @Singleton
+  static class LeftSpoke {
+    @Inject LeftSpoke(Hub hub) {
+      created.add("LeftSpoke");
+    }
+  }
+
+  @Singleton
+  static class RightSpoke {
+    @Inject RightSpoke(Hub hub) {
+      created.add("RightSpoke");
+    }
+  }
+
+  @Module(entryPoints = { LeftSpoke.class, RightSpoke.class })
+  static class SpokesModule {
+  }
+
+  @Test public void rejectedSingletonsAreCreatedOnTheCallingThread() {
+    ObjectGraph graph = ObjectGraph.create(new SpokesModule());
+    graph.validate(); // Link first, so that the executor only creates singletons.
+    Map<String, Long> timings = graph.initializeSingletons(
+        new LimitedExecutor(executor, 1, new RejectedExecutionException()));
+
+    assertThat(created).hasSize(3);
+    assertThat(timings).hasSize(3);
+  }
+
+  @Test public void executorFailureIsRethrown() {
+    ObjectGraph graph = ObjectGraph.create(new SpokesModule());
+    graph.validate(); // Link first, so that the executor only creates singletons.
+    try {
+      graph.initializeSingletons(
+          new LimitedExecutor(executor, 1, new IllegalStateException("Executor broken!")));
+      fail();
+    } catch (IllegalStateException expected) {
+      assertThat(expected.getMessage()).isEqualTo("Executor broken!");
+    }
+  }
+
+  /** Executes {@code limit} tasks on a delegate, then throws {@code failure}. */
+  static class LimitedExecutor implements Executor {
+    private final Executor delegate;
+    private final AtomicInteger remaining;
+    private final RuntimeException failure;
+
+    LimitedExecutor(Executor delegate, int limit, RuntimeException failure) {
+      this.delegate = delegate;
+      this.remaining = new AtomicInteger(limit);
+      this.failure = failure;
+    }
+
+    @Override public void execute(Runnable task) {
+      if (remaining.getAndDecrement() <= 0) {
+        throw failure;
+      }
+      delegate.execute(task);
+    }
+  }
+}
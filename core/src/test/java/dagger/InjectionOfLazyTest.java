@@ -16,13 +16,22 @@
  */
 package dagger;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.inject.Inject;
 import javax.inject.Provider;
+import javax.inject.Singleton;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 /**
  * Tests of injection of Lazy<T> bindings.
@@ -123,6 +132,65 @@ public final class InjectionOfLazyTest {
     assertEquals(1, ep.lazyInteger.get().intValue()); // still the same instance.
   }
 
+  @Test public void lazySharedByThreadsComputesOnce() throws Exception {
+    final AtomicInteger counter = new AtomicInteger();
+    final CountDownLatch providing = new CountDownLatch(1);
+    class TestEntryPoint {
+      @Inject Lazy<Integer> i;
+    }
+
+    @Module(entryPoints = TestEntryPoint.class)
+    class TestModule {
+      @Provides Integer provideInteger() throws InterruptedException {
+        providing.await(); // Hold the first caller until every thread is racing.
+        return counter.incrementAndGet();
+      }
+    }
+
+    final TestEntryPoint ep = injectWithModule(new TestEntryPoint(), new TestModule());
+    int threadCount = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+    for (int t = 0; t < threadCount; t++) {
+      results.add(executor.submit(new Callable<Integer>() {
+        @Override public Integer call() {
+          return ep.i.get();
+        }
+      }));
+    }
+    providing.countDown();
+    for (Future<Integer> result : results) {
+      assertEquals(1, result.get().intValue());
+    }
+    executor.shutdown();
+    assertEquals(1, counter.get());
+  }
+
+  @Test public void lazyOfSingletonIsShared() {
+    final AtomicInteger counter = new AtomicInteger();
+    class TestEntryPoint {
+      @Inject Lazy<Integer> i;
+      @Inject Lazy<Integer> j;
+    }
+
+    @Module(entryPoints = TestEntryPoint.class)
+    class TestModule {
+      @Provides @Singleton Integer provideInteger() {
+        return counter.incrementAndGet();
+      }
+    }
+
+    ObjectGraph graph = ObjectGraph.create(new TestModule());
+    TestEntryPoint ep1 = graph.inject(new TestEntryPoint());
+    TestEntryPoint ep2 = graph.inject(new TestEntryPoint());
+    assertSame(ep1.i, ep1.j);
+    assertSame(ep1.i, ep2.i);
+    assertEquals(0, counter.get());
+    assertEquals(1, ep1.i.get().intValue());
+    assertEquals(1, ep2.j.get().intValue());
+    assertEquals(1, counter.get());
+  }
+
   private <T> T injectWithModule(T ep, Object ... modules) {
     return ObjectGraph.create(modules).inject(ep);
   }
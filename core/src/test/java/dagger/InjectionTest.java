@@ -227,6 +227,22 @@ public final class InjectionTest {
     assertThat(entryPoint.f1).isSameAs(entryPoint.n2.fProvider.get());
   }
 
+  @Test public void singletonsAreNotSharedBetweenGraphs() {
+    @Module(entryPoints = { C.class, F.class })
+    class TestModule {
+      @Provides @Singleton F provideF() {
+        return new F();
+      }
+    }
+
+    ObjectGraph a = ObjectGraph.create(new TestModule());
+    ObjectGraph b = ObjectGraph.create(new TestModule());
+    assertThat(a.get(C.class)).isSameAs(a.get(C.class));
+    assertThat(a.get(C.class)).isNotSameAs(b.get(C.class));
+    assertThat(a.get(F.class)).isSameAs(a.get(F.class));
+    assertThat(a.get(F.class)).isNotSameAs(b.get(F.class));
+  }
+
   public static class N {
     @Inject F f1;
     @Inject F f2;
@@ -690,6 +706,56 @@ public final class InjectionTest {
     }
   }
 
+  @Singleton
+  static class Greeting {
+    @Inject Greeting() {}
+  }
+
+  @Test public void providesMethodParameterResolvedOnLaterLink() {
+    class TestEntryPoint {
+      @Inject String string;
+      @Inject Greeting greeting;
+    }
+
+    @Module(entryPoints = TestEntryPoint.class)
+    class TestModule {
+      Greeting greeting;
+      @Provides Integer provideCount() {
+        return 3;
+      }
+      // Integer is bound by this module; Greeting only gets a binding after the first link.
+      @Provides String provideString(Integer count, Greeting greeting) {
+        this.greeting = greeting;
+        return "hello " + count;
+      }
+    }
+
+    TestModule module = new TestModule();
+    TestEntryPoint entryPoint = ObjectGraph.create(module).inject(new TestEntryPoint());
+    assertThat(entryPoint.string).isEqualTo("hello 3");
+    assertThat(module.greeting).isNotNull();
+    assertThat(entryPoint.greeting).isSameAs(module.greeting);
+  }
+
+  @Test public void providesMethodWithoutParametersIsCalledEachTime() {
+    class TestEntryPoint {
+      @Inject Provider<Integer> integerProvider;
+    }
+
+    @Module(entryPoints = TestEntryPoint.class)
+    class TestModule {
+      final AtomicInteger next = new AtomicInteger();
+      @Provides Integer provideInteger() {
+        return next.getAndIncrement();
+      }
+    }
+
+    TestEntryPoint entryPoint = ObjectGraph.create(new TestModule()).inject(new TestEntryPoint());
+    assertThat(entryPoint.integerProvider.get()).isEqualTo(0);
+    assertThat(entryPoint.integerProvider.get()).isEqualTo(1);
+    assertThat(entryPoint.integerProvider.get()).isEqualTo(2);
+  }
+
   @Test public void runtimeProvidesMethodsExceptionsAreNotWrapped() {
     class TestEntryPoint {
       @Inject String string;
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2012 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.junit.Test;
+
+import static dagger.Provides.Type.MAP;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public final class MapBindingTest {
+  @Test public void mapBindings_SingleModule() {
+    class TestEntryPoint {
+      @Inject Map<String, String> strings;
+    }
+
+    @Module(entryPoints = TestEntryPoint.class)
+    class TestModule {
+      @Provides(type=MAP) @MapKey("b") String provideB() { return "string b"; }
+      @Provides(type=MAP) @MapKey("a") String provideA() { return "string a"; }
+    }
+
+    TestEntryPoint ep = injectWithModule(new TestEntryPoint(), new TestModule());
+    assertEquals(map("b", "string b", "a", "string a"), ep.strings);
+    assertEquals("string a", ep.strings.get("a"));
+    assertNull(ep.strings.get("c"));
+    assertThat(ep.strings.containsKey("b")).isTrue();
+  }
+
+  @Test public void mapBindings_MultiModuleWithQualifiers() {
+    class TestEntryPoint {
+      @Inject Map<String, String> strings;
+      @Inject @Named("foo") Map<String, String> fooStrings;
+    }
+
+    @Module
+    class TestIncludesModule {
+      @Provides(type=MAP) @MapKey("b") String provideB() { return "string b"; }
+      @Provides(type=MAP) @MapKey("a") @Named("foo") String provideFooA() { return "foo a"; }
+    }
+
+    @Module(entryPoints = TestEntryPoint.class, includes = TestIncludesModule.class)
+    class TestModule {
+      @Provides(type=MAP) @MapKey("a") String provideA() { return "string a"; }
+    }
+
+    TestEntryPoint ep = injectWithModule(new TestEntryPoint(),
+        new TestModule(), new TestIncludesModule());
+    assertEquals(map("a", "string a", "b", "string b"), ep.strings);
+    assertEquals(map("a", "foo a"), ep.fooStrings);
+  }
+
+  @Test public void mapBindings_AllSingletonsShareOneMap() {
+    final AtomicInteger aCounter = new AtomicInteger(100);
+    final AtomicInteger bCounter = new AtomicInteger(200);
+    class TestEntryPoint {
+      @Inject Map<String, Integer> objects;
+    }
+
+    @Module(entryPoints = TestEntryPoint.class)
+    class TestModule {
+      @Provides(type=MAP) @MapKey("a") @Singleton Integer a() { return aCounter.getAndIncrement(); }
+      @Provides(type=MAP) @MapKey("b") @Singleton Integer b() { return bCounter.getAndIncrement(); }
+    }
+
+    ObjectGraph graph = ObjectGraph.create(new TestModule());
+    TestEntryPoint ep1 = graph.inject(new TestEntryPoint());
+    TestEntryPoint ep2 = graph.inject(new TestEntryPoint());
+    assertEquals(map("a", 100, "b", 200), ep1.objects);
+    assertSame(ep1.objects, ep2.objects);
+    try {
+      ep1.objects.put("c", 102);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  @Test public void mapBindings_WithSingletonAndDefaultValues() {
+    final AtomicInteger singletonCounter = new AtomicInteger(100);
+    final AtomicInteger defaultCounter = new AtomicInteger(200);
+    class TestEntryPoint {
+      @Inject Map<String, Integer> objects;
+    }
+
+    @Module(entryPoints = TestEntryPoint.class)
+    class TestModule {
+      @Provides(type=MAP) @MapKey("a") @Singleton Integer a() {
+        return singletonCounter.getAndIncrement();
+      }
+      @Provides(type=MAP) @MapKey("b") Integer b() { return defaultCounter.getAndIncrement(); }
+    }
+
+    ObjectGraph graph = ObjectGraph.create(new TestModule());
+    TestEntryPoint ep1 = graph.inject(new TestEntryPoint());
+    TestEntryPoint ep2 = graph.inject(new TestEntryPoint());
+    assertEquals(map("a", 100, "b", 200), ep1.objects);
+    assertEquals(map("a", 100, "b", 201), ep2.objects);
+    assertThat(ep1.objects).isNotSameAs(ep2.objects);
+  }
+
+  @Test public void duplicateMapKeysFail() {
+    class TestEntryPoint {
+      @Inject Map<String, String> strings;
+    }
+
+    @Module(entryPoints = TestEntryPoint.class)
+    class TestModule {
+      @Provides(type=MAP) @MapKey("a") String provideA() { return "string a"; }
+      @Provides(type=MAP) @MapKey("a") String provideAnotherA() { return "another a"; }
+    }
+
+    try {
+      ObjectGraph.create(new TestModule());
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected.getMessage()).contains("Duplicate map key \"a\"");
+    }
+  }
+
+  @Test public void missingMapKeyFails() {
+    @Module
+    class TestModule {
+      @Provides(type=MAP) String provideA() { return "string a"; }
+    }
+
+    try {
+      ObjectGraph.create(new TestModule());
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected.getMessage()).contains("No @MapKey");
+    }
+  }
+
+  private <T> T injectWithModule(T ep, Object ... modules) {
+    return ObjectGraph.create(modules).inject(ep);
+  }
+
+  private <V> Map<String, V> map(Object... keysAndValues) {
+    Map<String, V> result = new LinkedHashMap<String, V>();
+    for (int i = 0; i < keysAndValues.length; i += 2) {
+      @SuppressWarnings("unchecked") // Callers pass values of type 'V'.
+      V value = (V) keysAndValues[i + 1];
+      result.put((String) keysAndValues[i], value);
+    }
+    return result;
+  }
+}
@@ -15,6 +15,8 @@
  */
 package dagger;
 
+import java.util.Arrays;
+import java.util.List;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
@@ -212,4 +214,50 @@ public final class MembersInjectorTest {
     entryPoint.membersInjector.injectMembers(membersInjected);
     assertThat(membersInjected.value).isEqualTo("members");
   }
-}
\ No newline at end of file
+
+  @Test public void getMembersInjector() {
+    @Module(entryPoints = Injectable.class)
+    class StringModule {
+      @Provides String provideString() {
+        return "injected";
+      }
+    }
+
+    ObjectGraph graph = ObjectGraph.create(new StringModule());
+    MembersInjector<Injectable> membersInjector = graph.getMembersInjector(Injectable.class);
+    assertThat(graph.getMembersInjector(Injectable.class)).isSameAs(membersInjector);
+    Injectable injectable = new Injectable();
+    membersInjector.injectMembers(injectable);
+    assertThat(injectable.injected).isEqualTo("injected");
+  }
+
+  @Test public void getMembersInjectorOfNonEntryPoint() {
+    @Module
+    class TestModule {
+    }
+
+    ObjectGraph graph = ObjectGraph.create(new TestModule());
+    try {
+      graph.getMembersInjector(Injectable.class);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test public void injectAll() {
+    @Module(entryPoints = { Injectable.class, Unconstructable.class })
+    class StringModule {
+      @Provides String provideString() {
+        return "injected";
+      }
+    }
+
+    List<Object> instances = Arrays.<Object>asList(
+        new Injectable(), new Injectable(), new Unconstructable("c"), new Injectable());
+    assertThat(ObjectGraph.create(new StringModule()).injectAll(instances)).isSameAs(instances);
+    assertThat(((Injectable) instances.get(0)).injected).isEqualTo("injected");
+    assertThat(((Injectable) instances.get(1)).injected).isEqualTo("injected");
+    assertThat(((Unconstructable) instances.get(2)).injected).isEqualTo("injected");
+    assertThat(((Injectable) instances.get(3)).injected).isEqualTo("injected");
+  }
+}
@@ -15,9 +15,18 @@
  */
 package dagger;
 
+import dagger.internal.Binding;
+import dagger.internal.ProblemDetector;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.inject.Inject;
 import org.junit.Test;
 
+import static org.fest.assertions.Assertions.assertThat;
 import static org.junit.Assert.fail;
 
 public final class ProblemDetectorTest {
@@ -72,6 +81,142 @@ public final class ProblemDetectorTest {
     graph.validate();
   }
 
+  @Test public void everyCycleReportedAtOnce() {
+    NodeBinding a = new NodeBinding("a");
+    NodeBinding b = new NodeBinding("b");
+    NodeBinding c = new NodeBinding("c");
+    NodeBinding d = new NodeBinding("d");
+    NodeBinding e = new NodeBinding("e");
+    a.dependencies.add(b);
+    b.dependencies.add(a);
+    c.dependencies.add(a); // Depends on a cycle without being part of it.
+    d.dependencies.add(d);
+    e.dependencies.add(c);
+
+    try {
+      new ProblemDetector().detectProblems(Arrays.<Binding<?>>asList(e, d, c, b, a));
+      fail();
+    } catch (IllegalStateException expected) {
+      assertThat(expected.getMessage())
+          .contains("Dependency cycle:\n    0. a bound by a\n    1. b bound by b\n    0. a")
+          .contains("Dependency cycle:\n    0. d bound by d\n    0. d")
+          .excludes("c bound by");
+    }
+    assertThat(c.isCycleFree()).isFalse(); // Unmarked because it depends on a cycle.
+  }
+
+  @Test public void deepGraphDoesNotOverflowStack() {
+    List<NodeBinding> chain = chain(100000);
+    NodeBinding last = chain.get(chain.size() - 1);
+    new ProblemDetector().detectProblems(Arrays.<Binding<?>>asList(last));
+    assertThat(chain.get(0).isCycleFree()).isTrue();
+    assertThat(last.isCycleFree()).isTrue();
+  }
+
+  @Test public void deepCycleDoesNotOverflowStack() {
+    List<NodeBinding> chain = chain(100000);
+    NodeBinding first = chain.get(0);
+    NodeBinding last = chain.get(chain.size() - 1);
+    first.dependencies.add(last);
+    try {
+      new ProblemDetector().detectProblems(Arrays.<Binding<?>>asList(last));
+      fail();
+    } catch (IllegalStateException expected) {
+      assertThat(expected.getMessage())
+          .startsWith("Dependency cycle:\n    0. node99999 bound by node99999\n"
+              + "    1. node99998 bound by node99998\n")
+          .endsWith("    99999. node0 bound by node0\n    0. node99999");
+    }
+  }
+
+  @Test public void concurrentDetectionReportsCyclesInComponentOrder() {
+    List<Binding<?>> bindings = new ArrayList<Binding<?>>();
+    for (int i = 0; i < 8; i++) {
+      List<NodeBinding> chain = chain(2000);
+      if (i % 3 == 0) {
+        chain.get(0).dependencies.add(chain.get(1));
+        chain.get(1).dependencies.add(chain.get(0));
+      }
+      bindings.addAll(chain);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      String serial = cycles(bindings, null);
+      assertThat(serial.split("Dependency cycle:")).hasSize(4); // Chains 0, 3 and 6.
+      for (int run = 0; run < 3; run++) {
+        assertThat(cycles(bindings, executor)).isEqualTo(serial);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test public void validateWithExecutor() {
+    class TestEntryPoint {
+      @Inject Rock rock;
+    }
+
+    @Module(entryPoints = TestEntryPoint.class)
+    class TestModule {
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      ObjectGraph graph = ObjectGraph.create(new TestModule());
+      graph.validate(executor);
+      fail();
+    } catch (IllegalStateException expected) {
+      assertThat(expected.getMessage()).contains("Dependency cycle:");
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /** Returns the cycles reported by detecting problems in {@code bindings}. */
+  private String cycles(List<Binding<?>> bindings, ExecutorService executor) {
+    try {
+      if (executor != null) {
+        new ProblemDetector().detectProblems(bindings, executor);
+      } else {
+        new ProblemDetector().detectProblems(bindings);
+      }
+      throw new AssertionError();
+    } catch (IllegalStateException expected) {
+      return expected.getMessage();
+    }
+  }
+
+  /** Returns {@code size} bindings where each binding depends on the one before it. */
+  private List<NodeBinding> chain(int size) {
+    List<NodeBinding> result = new ArrayList<NodeBinding>();
+    for (int i = 0; i < size; i++) {
+      NodeBinding binding = new NodeBinding("node" + i);
+      if (i > 0) {
+        binding.dependencies.add(result.get(i - 1));
+      }
+      result.add(binding);
+    }
+    return result;
+  }
+
+  /** A binding whose dependencies are other bindings, rather than keys to link. */
+  static class NodeBinding extends Binding<Object> {
+    final List<Binding<?>> dependencies = new ArrayList<Binding<?>>();
+
+    NodeBinding(String key) {
+      super(key, null, false, key);
+    }
+
+    @Override public void getDependencies(Set<Binding<?>> get, Set<Binding<?>> injectMembers) {
+      get.addAll(dependencies);
+    }
+
+    @Override public String toString() {
+      return provideKey;
+    }
+  }
+
   static class Rock {
     @Inject Scissors scissors;
   }
@@ -33,6 +33,8 @@ import static org.fest.assertions.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 public final class SetBindingTest {
   @Test public void multiValueBindings_SingleModule() {
@@ -113,6 +115,53 @@ public final class SetBindingTest {
 
  }
 
+  @Test public void multiValueBindings_AllSingletonsShareOneSet() {
+    final AtomicInteger counter = new AtomicInteger(100);
+    class TestEntryPoint {
+      @Inject Set<Integer> objects;
+    }
+
+    @Module(entryPoints = TestEntryPoint.class)
+    class TestModule {
+      @Provides(type=SET) @Singleton Integer a() { return counter.getAndIncrement(); }
+      @Provides(type=SET) @Singleton Integer b() { return counter.getAndIncrement(); }
+    }
+
+    ObjectGraph graph = ObjectGraph.create(new TestModule());
+    TestEntryPoint ep1 = graph.inject(new TestEntryPoint());
+    TestEntryPoint ep2 = graph.inject(new TestEntryPoint());
+    assertEquals(set(100, 101), ep1.objects);
+    assertSame(ep1.objects, ep2.objects);
+    try {
+      ep1.objects.add(102);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  @Test public void multiValueBindings_EqualValuesAreCollapsed() {
+    class TestEntryPoint {
+      @Inject Set<String> strings;
+    }
+
+    @Module(entryPoints = TestEntryPoint.class)
+    class TestModule {
+      @Provides(type=SET) String provideFirstString() { return "string1"; }
+      @Provides(type=SET) String provideSecondString() { return new String("string1"); }
+      @Provides(type=SET) String provideThirdString() { return "string2"; }
+    }
+
+    TestEntryPoint ep1 = injectWithModule(new TestEntryPoint(), new TestModule());
+    assertEquals(set("string1", "string2"), ep1.strings);
+    assertThat(ep1.strings).containsOnly("string1", "string2");
+    assertThat(ep1.strings.contains("string3")).isFalse();
+    try {
+      ep1.strings.iterator().remove();
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
   @Test public void multiValueBindings_WithQualifiers() {
     class TestEntryPoint {
       @Inject Set<String> strings;
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2012 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.inject.Inject;
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public final class StartupTraceTest {
+  static class Engine {
+    @Inject Engine() {
+    }
+  }
+
+  static class Car {
+    @Inject Engine engine;
+  }
+
+  @Module(entryPoints = Car.class)
+  static class TestModule {
+  }
+
+  @Test public void traceAttributesTimeToModulesPluginsAndJitBindings() {
+    StartupTrace trace = new StartupTrace();
+    ObjectGraph graph = ObjectGraph.createTraced(trace, new TestModule());
+    graph.inject(new Car());
+
+    List<String> events = new ArrayList<String>();
+    for (StartupTrace.Event event : trace.getEvents()) {
+      events.add(event.getCategory() + " " + event.getName());
+      assertThat(event.getDurationNanos()).isGreaterThanOrEqualTo(0);
+    }
+    assertThat(events).contains(
+        "graph create",
+        "module " + TestModule.class.getName(),
+        "plugin ClassloadingPlugin " + TestModule.class.getName(),
+        "plugin ReflectivePlugin " + TestModule.class.getName(),
+        "module-bindings " + TestModule.class.getName(),
+        "jit-binding " + Engine.class.getName(),
+        "link members/" + Car.class.getName());
+  }
+
+  @Test public void pluginFallbacksAreRecordedAsFailures() {
+    StartupTrace trace = new StartupTrace();
+    ObjectGraph.createTraced(trace, new TestModule());
+
+    StartupTrace.Event classloading = null;
+    for (StartupTrace.Event event : trace.getEvents()) {
+      if (event.getName().equals("ClassloadingPlugin " + TestModule.class.getName())) {
+        classloading = event;
+      }
+    }
+    assertThat(classloading.getFailure()).isNotNull();
+  }
+
+  @Test public void exportsJsonAndChromeTraceFormat() {
+    StartupTrace trace = new StartupTrace();
+    ObjectGraph.createTraced(trace, new TestModule()).validate();
+
+    assertThat(trace.toJson()).contains("{\"events\":[",
+        "\"category\":\"module\",\"name\":\"" + TestModule.class.getName() + "\"");
+    assertThat(trace.toChromeTrace()).contains("{\"traceEvents\":[", "\"ph\":\"X\"",
+        "\"cat\":\"link\"");
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2012 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class ThreadSafetyTest {
+  private static final int THREAD_COUNT = 64;
+
+  static final AtomicInteger constructions = new AtomicInteger();
+
+  @Singleton
+  static class SlowSingleton {
+    @Inject SlowSingleton() throws InterruptedException {
+      constructions.incrementAndGet();
+      Thread.sleep(10);
+    }
+  }
+
+  @Test public void singletonIsConstructedOnceUnderContention() throws Exception {
+    @Module(entryPoints = SlowSingleton.class)
+    class TestModule {
+    }
+
+    constructions.set(0);
+    final ObjectGraph graph = ObjectGraph.create(new TestModule());
+    List<SlowSingleton> results = getConcurrently(new Callable<SlowSingleton>() {
+      @Override public SlowSingleton call() {
+        return graph.get(SlowSingleton.class);
+      }
+    });
+
+    assertThat(constructions.get()).isEqualTo(1);
+    for (SlowSingleton result : results) {
+      assertThat(result).isSameAs(results.get(0));
+    }
+  }
+
+  static class EntryPoint {
+    @Inject SlowSingleton singleton;
+  }
+
+  @Test public void concurrentInjectionOfEntryPoint() throws Exception {
+    @Module(entryPoints = { EntryPoint.class, SlowSingleton.class })
+    class TestModule {
+    }
+
+    final ObjectGraph graph = ObjectGraph.create(new TestModule());
+    List<EntryPoint> results = getConcurrently(new Callable<EntryPoint>() {
+      @Override public EntryPoint call() {
+        return graph.inject(new EntryPoint());
+      }
+    });
+
+    SlowSingleton singleton = graph.get(SlowSingleton.class);
+    for (EntryPoint result : results) {
+      assertThat(result.singleton).isSameAs(singleton);
+    }
+  }
+
+  static class Root {
+    @Inject Branch left;
+    @Inject Branch right;
+    @Inject Leaf leaf;
+  }
+
+  static class Branch {
+    @Inject Leaf leaf;
+    @Inject Provider<Root> root;
+  }
+
+  static class Leaf {
+    @Inject Leaf() {}
+  }
+
+  @Test public void linkAllOnExecutor() throws Exception {
+    @Module(entryPoints = Root.class)
+    class TestModule {
+    }
+
+    ObjectGraph graph = ObjectGraph.create(new TestModule());
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      graph.linkAll(executor);
+    } finally {
+      executor.shutdown();
+    }
+    Root root = graph.get(Root.class);
+    assertThat(root.left.leaf).isNotNull();
+    assertThat(root.right.root.get()).isNotNull();
+  }
+
+  static class Unsatisfied {
+    @Inject Runnable runnable;
+    @Inject Leaf leaf;
+    @Inject Comparable<String> comparable;
+  }
+
+  @Test public void linkAllOnExecutorReportsErrorsLikeSerialLinking() throws Exception {
+    @Module(entryPoints = Unsatisfied.class)
+    class TestModule {
+    }
+
+    String serialMessage = null;
+    try {
+      ObjectGraph.create(new TestModule()).validate();
+      fail();
+    } catch (IllegalStateException expected) {
+      serialMessage = expected.getMessage();
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      ObjectGraph.create(new TestModule()).linkAll(executor);
+      fail();
+    } catch (IllegalStateException expected) {
+      assertThat(expected.getMessage()).isEqualTo(serialMessage);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Calls {@code callable} on {@link #THREAD_COUNT} threads that are released
+   * at the same time, and returns the results.
+   */
+  private <T> List<T> getConcurrently(final Callable<T> callable) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+    try {
+      final CountDownLatch start = new CountDownLatch(1);
+      List<Future<T>> futures = new ArrayList<Future<T>>();
+      for (int i = 0; i < THREAD_COUNT; i++) {
+        futures.add(executor.submit(new Callable<T>() {
+          @Override public T call() throws Exception {
+            start.await();
+            return callable.call();
+          }
+        }));
+      }
+      start.countDown();
+      List<T> results = new ArrayList<T>();
+      for (Future<T> future : futures) {
+        results.add(future.get());
+      }
+      return results;
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2012 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public final class BindingMapTest {
+  @Test public void putAndGet() {
+    BindingMap map = new BindingMap();
+    Binding<?> a = binding("a");
+    Binding<?> b = binding("b");
+    assertThat(map.put("a", a)).isNull();
+    assertThat(map.put("a", b)).isSameAs(a);
+    assertThat(map.get("a")).isSameAs(b);
+    assertThat(map.get(new String("a"))).isSameAs(b); // Equal but not interned.
+    assertThat(map.get("b")).isNull();
+    assertThat(map.get(null)).isNull();
+    assertThat(map.size()).isEqualTo(1);
+  }
+
+  @Test public void growsAndIteratesLikeHashMap() {
+    BindingMap map = new BindingMap();
+    Map<String, Binding<?>> expected = new HashMap<String, Binding<?>>();
+    for (int i = 0; i < 10000; i++) {
+      String key = "com.example.Node" + i;
+      Binding<?> binding = binding(key);
+      map.put(key, binding);
+      expected.put(key, binding);
+    }
+    assertThat(map.size()).isEqualTo(10000);
+    assertThat(map).isEqualTo(expected);
+    assertThat(map.values()).hasSize(10000);
+    for (Map.Entry<String, Binding<?>> entry : expected.entrySet()) {
+      assertThat(map.get(entry.getKey())).isSameAs(entry.getValue());
+    }
+  }
+
+  private Binding<?> binding(String key) {
+    return new Binding<Object>(key, null, false, "test") {
+    };
+  }
+}
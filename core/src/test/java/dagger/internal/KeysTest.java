@@ -142,6 +142,15 @@ public final class KeysTest {
         .isEqualTo("@javax.inject.Named(value=foo)/java.util.Set<java.lang.String>");
   }
 
+  @Test public void keysAreInterned() throws NoSuchFieldException {
+    assertThat(Keys.get(String.class)).isSameAs("java.lang.String");
+    assertThat(Keys.getMembersKey(String.class)).isSameAs("members/java.lang.String");
+    assertThat(fieldKey("mapStringListInteger"))
+        .isSameAs("java.util.Map<java.lang.String, java.util.List<java.lang.Integer>>");
+    assertThat(Keys.getBuiltInBindingsKey(fieldKey("providerOfType")))
+        .isSameAs("java.lang.String");
+  }
+
   private String fieldKey(String fieldName) throws NoSuchFieldException {
     Field field = KeysTest.class.getDeclaredField(fieldName);
     return Keys.get(field.getGenericType(), field.getAnnotations(), field);
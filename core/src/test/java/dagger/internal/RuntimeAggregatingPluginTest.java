@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2012 Square Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dagger.internal;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class RuntimeAggregatingPluginTest {
+  /** Counts calls to getAtInjectBinding() and getGraphAdapter(). */
+  static class CountingPlugin implements Plugin {
+    final boolean fails;
+    int calls;
+
+    CountingPlugin(boolean fails) {
+      this.fails = fails;
+    }
+
+    @Override public Binding<?> getAtInjectBinding(String key, String className,
+        boolean mustBeInjectable) {
+      calls++;
+      if (fails) {
+        throw new RuntimeException("Not found: " + className);
+      }
+      return new Binding<Object>(key, null, false, className) {
+      };
+    }
+
+    @Override public <T> ModuleAdapter<T> getModuleAdapter(Class<? extends T> moduleClass,
+        T module) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override public StaticInjection getStaticInjection(Class<?> injectedClass) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override public <T> GraphAdapter<T> getGraphAdapter(Class<T> moduleClass) {
+      calls++;
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  @Test public void failingPluginsAreSkippedForResolvedNames() {
+    CountingPlugin failing = new CountingPlugin(true);
+    CountingPlugin succeeding = new CountingPlugin(false);
+    RuntimeAggregatingPlugin plugin = new RuntimeAggregatingPlugin(failing, succeeding);
+
+    plugin.getAtInjectBinding("Foo", "Foo", true);
+    plugin.getAtInjectBinding("Foo", "Foo", true);
+    plugin.getAtInjectBinding("Bar", "Bar", true);
+
+    assertThat(failing.calls).isEqualTo(2); // Once for Foo and once for Bar.
+    assertThat(succeeding.calls).isEqualTo(3);
+  }
+
+  @Test public void failuresOfTheLastPluginAreNotCached() {
+    CountingPlugin first = new CountingPlugin(true);
+    CountingPlugin last = new CountingPlugin(true);
+    RuntimeAggregatingPlugin plugin = new RuntimeAggregatingPlugin(first, last);
+
+    for (int i = 0; i < 2; i++) {
+      try {
+        plugin.getAtInjectBinding("Foo", "Foo", true);
+        fail();
+      } catch (RuntimeException expected) {
+        assertThat(expected.getMessage()).isEqualTo("Not found: Foo");
+      }
+    }
+    assertThat(first.calls).isEqualTo(2);
+    assertThat(last.calls).isEqualTo(2);
+  }
+
+  @Test public void missingGraphAdaptersAreCached() {
+    CountingPlugin first = new CountingPlugin(true);
+    CountingPlugin last = new CountingPlugin(true);
+    RuntimeAggregatingPlugin plugin = new RuntimeAggregatingPlugin(first, last);
+
+    assertThat(plugin.getGraphAdapter(String.class)).isNull();
+    assertThat(plugin.getGraphAdapter(String.class)).isNull();
+    assertThat(first.calls).isEqualTo(1);
+    assertThat(last.calls).isEqualTo(1);
+  }
+}